@@ -0,0 +1,118 @@
+import bench.GameFixture;
+import javafx.application.Platform;
+import javafx.scene.layout.Pane;
+
+/**
+ * GameFixtureImpl drives the game classes for the benchmarks in the bench package.
+ * It lives in the default package next to the game, see GameFixture for why.
+ */
+public class GameFixtureImpl implements GameFixture {
+    private static final int DIG_COLUMN = 1;
+    private static final byte[] ORES = {BlockGrid.DIAMOND, BlockGrid.EMERALD, BlockGrid.AMAZONITE, BlockGrid.PLATINUM};
+
+    private MineSimulation simulation;
+    private BlockGrid diggingGrid;
+    private boolean diggingOres;
+    private BlockGrid climbingGrid;
+    private Pane scenePane;
+    private GridDrawer drawer;
+    private Autopilot autopilot;
+
+    @Override
+    public Object initializeGrid(int width, int height) {
+        return new GridInitializer(height, width).initializeGrid();
+    }
+
+    @Override
+    public void newGame(int width, int height) {
+        simulation = new MineSimulation(new GridInitializer(height, width).initializeGrid(), 1, 1);
+    }
+
+    @Override
+    public void placeDriller(int x, int y) {
+        simulation.restore(x, y, MineSimulation.FUEL_LEVEL, false, 0, 0);
+    }
+
+    @Override
+    public int moveLeft() {
+        return simulation.moveLeft().ordinal();
+    }
+
+    @Override
+    public int moveRight() {
+        return simulation.moveRight().ordinal();
+    }
+
+    @Override
+    public void newDiggingGame(int depth, boolean ores) {
+        diggingGrid = new BlockGrid(DIG_COLUMN + 2, depth);
+        diggingOres = ores;
+        simulation = new MineSimulation(diggingGrid, DIG_COLUMN, 0);
+        refillColumn();
+    }
+
+    /**
+     * Fills the digging column with soil or ores again and puts the driller back on top with a full tank.
+     * Resetting also forgets the cells the digs left for gravity, which no tick ever looks at here.
+     */
+    private void refillColumn() {
+        for (int y = 1; y < diggingGrid.getHeight(); y++) {
+            diggingGrid.setType(DIG_COLUMN, y, diggingOres ? ORES[y % ORES.length] : BlockGrid.SOIL);
+        }
+        simulation.reset(DIG_COLUMN, 0);
+    }
+
+    @Override
+    public int dig() {
+        // A full tank lasts for FUEL_LEVEL / FUEL_CONSUMPTION_DIGGING digs, start over before it runs out
+        if (simulation.getY() >= diggingGrid.getHeight() - 1 || simulation.getFuel() <= MineSimulation.FUEL_CONSUMPTION_DIGGING) {
+            refillColumn();
+        }
+        return simulation.moveDown().ordinal();
+    }
+
+    @Override
+    public void newClimbingGame(int height) {
+        climbingGrid = new BlockGrid(DIG_COLUMN + 2, height); // Every cell is sky
+        simulation = new MineSimulation(climbingGrid, DIG_COLUMN, height - 1);
+    }
+
+    @Override
+    public int climb() {
+        // Flying up costs no fuel until the next tick, only the top of the column has to be left
+        if (simulation.getY() == 0) {
+            simulation.reset(DIG_COLUMN, climbingGrid.getHeight() - 1); // Also forgets the cells the moves left for gravity
+        }
+        return simulation.moveUp().ordinal();
+    }
+
+    @Override
+    public void newAutopilotGame(int width, int height) {
+        simulation = new MineSimulation(new GridInitializer(height, width).initializeGrid(1), width / 2, 3);
+        autopilot = new Autopilot(simulation);
+    }
+
+    @Override
+    public int planRoute() {
+        autopilot.plan();
+        return autopilot.getPlanLength();
+    }
+
+    @Override
+    public void prepareScene(int width, int height) {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException e) {
+            // Toolkit is already running in this JVM
+        }
+        simulation = new MineSimulation(new GridInitializer(height, width).initializeGrid(), 1, 1);
+        scenePane = new Pane();
+        drawer = new GridDrawer(scenePane, new Driller(simulation, null), simulation.getGrid());
+    }
+
+    @Override
+    public int drawGrid() {
+        drawer.drawGrid();
+        return scenePane.getChildren().size();
+    }
+}
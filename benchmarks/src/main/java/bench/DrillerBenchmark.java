@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the driller's moves and the dig resolution that used to be Game.update.
+ * Moves run headless through the simulation, the JavaFX view is not involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrillerBenchmark {
+    private GameFixture moving;
+    private GameFixture climbing;
+    private GameFixture digging;
+    private GameFixture diggingOres;
+
+    @Setup
+    public void setUp() {
+        moving = GameFixture.load();
+        moving.newGame(20, 13);
+        moving.placeDriller(10, 2); // In the sky, moving sideways never digs
+        climbing = GameFixture.load();
+        climbing.newClimbingGame(1 << 12);
+        digging = GameFixture.load();
+        digging.newDiggingGame(1 << 12, false);
+        diggingOres = GameFixture.load();
+        diggingOres.newDiggingGame(1 << 12, true);
+    }
+
+    @Benchmark
+    public void moveLeftThenRight(Blackhole blackhole) {
+        blackhole.consume(moving.moveLeft());
+        blackhole.consume(moving.moveRight());
+    }
+
+    @Benchmark
+    public int moveUp() {
+        return climbing.climb(); // Moves into the open cell above, not against the top edge
+    }
+
+    @Benchmark
+    public int moveDown() {
+        return diggingOres.dig(); // Falling through open cells is gravity's job, a move down always digs or is blocked
+    }
+
+    @Benchmark
+    public int digDown() {
+        return digging.dig();
+    }
+}
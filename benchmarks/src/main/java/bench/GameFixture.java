@@ -0,0 +1,106 @@
+package bench;
+
+/**
+ * GameFixture is the bridge between the benchmarks and the game.
+ * JMH only accepts benchmarks in a named package, while the game classes are in the default package
+ * and cannot be referenced from one, so the benchmarks drive the game through this interface.
+ * The only implementation is GameFixtureImpl in the default package, loaded with {@link #load()}.
+ */
+public interface GameFixture {
+    /**
+     * Generates a grid with GridInitializer.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     * @return The generated grid.
+     */
+    Object initializeGrid(int width, int height);
+
+    /**
+     * Starts a new headless game on a freshly generated grid with the driller at its start cell.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    void newGame(int width, int height);
+
+    /**
+     * Places the driller on an open cell so it can move left and right without digging.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    void placeDriller(int x, int y);
+
+    /**
+     * Moves the driller.
+     * @return The ordinal of the move's outcome.
+     */
+    int moveLeft();
+
+    /**
+     * Moves the driller.
+     * @return The ordinal of the move's outcome.
+     */
+    int moveRight();
+
+    /**
+     * Starts a game in a deep column of soil or ores, so every moveDown digs one block.
+     * @param depth The depth of the column in blocks.
+     * @param ores True to fill the column with the four ores in turn, false to fill it with soil.
+     */
+    void newDiggingGame(int depth, boolean ores);
+
+    /**
+     * Digs the block below the driller, starting a new column when the bottom is reached.
+     * @return The ordinal of the move's outcome.
+     */
+    int dig();
+
+    /**
+     * Starts a game in a tall open column with the driller at the bottom, so every moveUp flies one cell up.
+     * @param height The height of the column in blocks.
+     */
+    void newClimbingGame(int height);
+
+    /**
+     * Flies the driller one cell up, starting at the bottom again when the top is reached.
+     * @return The ordinal of the move's outcome.
+     */
+    int climb();
+
+    /**
+     * Starts a headless game on a seeded grid with the driller standing in the middle of the top row, and an autopilot for it.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    void newAutopilotGame(int width, int height);
+
+    /**
+     * Plans the autopilot's route from the driller's position.
+     * @return The number of moves in the route.
+     */
+    int planRoute();
+
+    /**
+     * Starts the JavaFX toolkit and prepares a grid to draw.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    void prepareScene(int width, int height);
+
+    /**
+     * Builds the scene graph of the prepared grid with GridDrawer.drawGrid.
+     * @return The number of nodes in the scene.
+     */
+    int drawGrid();
+
+    /**
+     * Loads the implementation from the default package.
+     * @return A new fixture.
+     */
+    static GameFixture load() {
+        try {
+            return (GameFixture) Class.forName("GameFixtureImpl").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("GameFixtureImpl is missing from the benchmark jar", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * ActiveCells is the set of grid cells a cellular automaton looks at in its next step.
+ * Cells are added while a step runs and during the moves between steps, and swap turns them into the list of the next step.
+ * The list is sorted bottom row first and right to left, without duplicates, so a step visits cells in the same order
+ * however they were added, and a block can fall into a cell that was emptied earlier in the same step.
+ * A cell can be marked moving, for a block that moved in the step that added it.
+ */
+public class ActiveCells {
+    private long[] current = new long[64]; // Cells of the running step, packed as (y << 32) | (x << 1) | moving
+    private long[] next = new long[64]; // Cells added for the next step
+    private int currentCount;
+    private int nextCount;
+
+    /**
+     * Adds a cell to the next step.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @param moving True if the block in the cell is falling.
+     */
+    public void add(int x, int y, boolean moving) {
+        if (nextCount == next.length) {
+            next = Arrays.copyOf(next, nextCount * 2);
+        }
+        next[nextCount++] = ((long) y << 32) | ((long) x << 1) | (moving ? 1 : 0);
+    }
+
+    /**
+     * Forgets every cell, of the current step and of the next one.
+     */
+    public void clear() {
+        currentCount = 0;
+        nextCount = 0;
+    }
+
+    /**
+     * Makes the cells added so far the cells of a new step, and starts an empty set for the step after it.
+     * A cell added both moving and not moving is kept once, as moving.
+     * @return The number of cells in the new step.
+     */
+    public int swap() {
+        Arrays.sort(next, 0, nextCount);
+        int count = 0;
+        for (int i = 0; i < nextCount; i++) {
+            if (count > 0 && next[count - 1] >>> 1 == next[i] >>> 1) {
+                next[count - 1] = next[i]; // Same cell, the moving entry sorts last
+            } else {
+                next[count++] = next[i];
+            }
+        }
+        long[] swapped = current;
+        current = next;
+        currentCount = count;
+        next = swapped;
+        nextCount = 0;
+        return count;
+    }
+
+    /**
+     * Returns the x coordinate of a cell of the current step, cells are numbered bottom row first.
+     * @param index The number of the cell in the step.
+     */
+    public int getX(int index) {
+        return (int) (current[currentCount - 1 - index] & 0xffffffffL) >>> 1;
+    }
+
+    /**
+     * Returns the y coordinate of a cell of the current step.
+     * @param index The number of the cell in the step.
+     */
+    public int getY(int index) {
+        return (int) (current[currentCount - 1 - index] >>> 32);
+    }
+
+    /**
+     * Returns true if the block in a cell of the current step was falling when the cell was added.
+     * @param index The number of the cell in the step.
+     */
+    public boolean isMoving(int index) {
+        return (current[currentCount - 1 - index] & 1) != 0;
+    }
+
+    /**
+     * Returns true if no cell was added for the next step.
+     */
+    public boolean isEmpty() {
+        return nextCount == 0;
+    }
+}
@@ -0,0 +1,427 @@
+import java.util.Arrays;
+
+/**
+ * Autopilot plans the most profitable route for the driller and plays it back one move at a time.
+ * The route is found with Dijkstra's algorithm over the states the driller can be in: standing on a cell, or hovering
+ * after flying up. The edges use the fuel costs of MineSimulation: every move takes one tick of idle or flying drain,
+ * digging costs FUEL_CONSUMPTION_DIGGING on top, gravity falls take one idle tick per cell, boulders are never dug
+ * and lava is never entered. The route goes to the ore with the most money per unit of fuel that the tank can reach.
+ *
+ * All search state is kept in primitive arrays indexed by state, with a binary heap of state indexes,
+ * so a search allocates nothing once the arrays have grown to the window's size.
+ * The search is limited to a window of at most MAX_WINDOW cells around the driller and to the fuel left in the tank.
+ *
+ * The plan is kept while the mine around it stays the same. A changed cell next to the remaining route,
+ * or a driller that is not where the plan expects it, makes the next move plan again from where the driller is.
+ * Given an OreIndex, a search that cannot find a target is skipped: when no ore is left in the window, or when even
+ * the nearest ore is further than the tank can reach at one idle tick per cell.
+ */
+public class Autopilot implements SimulationListener {
+    public static final int MAX_WINDOW = 1024; // Largest width and height of the searched part of the mine
+    private static final int COST_SCALE = 4; // Costs are in quarters of a fuel unit, every cost of the simulation is a whole number of them
+    private static final int IDLE = cost(MineSimulation.FUEL_CONSUMPTION);
+    private static final int FLYING = cost(MineSimulation.FUEL_CONSUMPTION_FLYING);
+    private static final int DIGGING = cost(MineSimulation.FUEL_CONSUMPTION_DIGGING);
+    private static final MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+    private static final int[] VALUES = new int[BlockGrid.TYPE_COUNT]; // Money earned by digging each block type
+    private static final int MAX_VALUE;
+
+    static {
+        int max = 0;
+        for (byte type = 0; type < BlockGrid.TYPE_COUNT; type++) {
+            VALUES[type] = BlockGrid.blockOf(type).getValue();
+            max = Math.max(max, VALUES[type]);
+        }
+        MAX_VALUE = max;
+    }
+
+    private final MineSimulation simulation;
+    private final MineGrid grid;
+    private OreIndex oreIndex; // Where the ores are, null to always search
+
+    // Searched window, state = ((y - windowY) * windowWidth + x - windowX) * 2 + (hovering ? 1 : 0)
+    private int windowX, windowY, windowWidth, windowHeight;
+    private int[] cost = new int[0]; // Cheapest known cost of each state, valid when seen[state] == search
+    private int[] parent = new int[0]; // State the cheapest route comes from
+    private byte[] parentMove = new byte[0]; // Direction ordinal of the move from the parent
+    private int[] seen = new int[0]; // Number of the last search that reached the state
+    private int[] heapIndex = new int[0]; // Position of the state in the heap, -1 once it is expanded
+    private int[] heap = new int[1024]; // States waiting to be expanded, cheapest first
+    private int heapSize;
+    private int search;
+    private int expanded;
+    private int budget;
+
+    // Best target of the current search: the move from a settled state that digs the ore
+    private int bestFrom;
+    private int bestMove;
+    private int bestCost;
+    private double bestScore;
+
+    // The plan: move i enters cell (planX[i], planY[i]) and ends, after falling, in state planStates[i]
+    private byte[] planMoves = new byte[64];
+    private int[] planX = new int[64];
+    private int[] planY = new int[64];
+    private int[] planStates = new int[64];
+    private int planLength;
+    private int cursor; // Index of the next move to play
+    private int planStart; // State the plan starts from
+    private boolean planValid = false;
+
+    /**
+     * Constructor for Autopilot.
+     * Register it as a listener of the simulation so it notices cells that change under its plan.
+     * @param simulation The simulation whose driller is flown.
+     */
+    public Autopilot(MineSimulation simulation) {
+        this.simulation = simulation;
+        this.grid = simulation.getGrid();
+    }
+
+    /**
+     * Setter for the ore index used to skip searches that cannot find a target.
+     * @param oreIndex The OreIndex of the grid, kept up to date by the simulation, or null to always search.
+     */
+    public void setOreIndex(OreIndex oreIndex) {
+        this.oreIndex = oreIndex;
+    }
+
+    private static int cost(double fuel) {
+        return (int) Math.round(fuel * COST_SCALE);
+    }
+
+    /**
+     * Returns the next move of the plan, planning again first if the plan is finished or no longer fits the mine.
+     * @return The direction to move in, or null to wait while the driller falls or when there is nothing worth digging.
+     */
+    public MineSimulation.Direction next() {
+        if (simulation.isGameOver()) return null;
+        int x = simulation.getX();
+        int y = simulation.getY();
+        if (isFalling(x, y)) return null; // Gravity moves the driller, a move now would leave the plan
+        int state = inWindow(x, y) ? stateOf(x, y, simulation.isFlying()) : -1;
+        int expected = cursor == 0 ? planStart : planStates[cursor - 1];
+        if (!planValid || cursor == planLength || state != expected) {
+            if (!plan()) return null;
+        }
+        return DIRECTIONS[planMoves[cursor++]];
+    }
+
+    /**
+     * Plans a route from the driller to the ore with the most money per unit of fuel.
+     * @return True if a route was found.
+     */
+    public boolean plan() {
+        planValid = false;
+        planLength = 0;
+        cursor = 0;
+        expanded = 0;
+        if (simulation.isGameOver()) return false;
+        int x = simulation.getX();
+        int y = simulation.getY();
+        placeWindow(x, y);
+        budget = (int) Math.floor(simulation.getFuel() * COST_SCALE) - 1; // A dig that uses up the tank ends the game
+        search++;
+        heapSize = 0;
+        bestFrom = -1;
+        bestScore = 0;
+        if (oreIndex != null && !worthSearching(x, y)) return false;
+
+        // A falling driller starts where it lands
+        int startY = isFalling(x, y) ? landing(x, y) : y;
+        planStart = stateOf(x, startY, simulation.isFlying());
+        reach(planStart, (startY - y) * IDLE, -1, 0);
+        while (heapSize > 0) {
+            int state = pop();
+            int stateCost = cost[state];
+            // No ore further away can beat the best one found, even the most valuable one
+            if (bestFrom >= 0 && (double) MAX_VALUE / (stateCost + DIGGING + IDLE) <= bestScore) break;
+            expanded++;
+            expand(state, stateCost);
+        }
+        if (bestFrom < 0) return false;
+        buildPlan();
+        planValid = true;
+        return true;
+    }
+
+    /**
+     * Returns false when the ore index shows that the search cannot find a target.
+     * Every move costs at least one idle tick per cell and digging the ore costs DIGGING on top, so an ore at
+     * Manhattan distance d costs at least d * IDLE + DIGGING.
+     */
+    private boolean worthSearching(int x, int y) {
+        if (oreIndex.regionValue(windowX, windowY, windowX + windowWidth, windowY + windowHeight) == 0) return false;
+        long nearest = oreIndex.nearest(OreIndex.ANY_ORE, x, y);
+        if (nearest < 0) return false;
+        int distance = Math.abs((int) nearest - x) + Math.abs((int) (nearest >>> 32) - y);
+        return (long) distance * IDLE + DIGGING <= budget;
+    }
+
+    /**
+     * Relaxes every move the driller can make from a state.
+     * @param state The state to expand.
+     * @param stateCost The cost of the state.
+     */
+    private void expand(int state, int stateCost) {
+        int cell = state >> 1;
+        boolean hovering = (state & 1) != 0;
+        int x = windowX + cell % windowWidth;
+        int y = windowY + cell / windowWidth;
+
+        // Flying up only enters open cells, the driller keeps hovering
+        if (y > 0 && inWindow(x, y - 1) && grid.isOpen(x, y - 1)) {
+            reach(stateOf(x, y - 1, true), stateCost + FLYING, state, MineSimulation.Direction.UP.ordinal());
+        }
+        sideways(state, stateCost, x, y, -1, MineSimulation.Direction.LEFT, hovering);
+        sideways(state, stateCost, x, y, 1, MineSimulation.Direction.RIGHT, hovering);
+        if (y < grid.getHeight() - 1) {
+            byte below = grid.getType(x, y + 1);
+            if (grid.isOpen(x, y + 1)) { // Hovering driller stops flying and falls
+                enter(state, stateCost, x, y, 0, MineSimulation.Direction.DOWN.ordinal());
+            } else if (isDiggable(below)) {
+                enter(state, stateCost + DIGGING, x, y + 1, VALUES[below], MineSimulation.Direction.DOWN.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Relaxes a move to the left or right, with the same rules as MineSimulation.moveSideways.
+     */
+    private void sideways(int state, int stateCost, int x, int y, int dx, MineSimulation.Direction direction, boolean hovering) {
+        int targetX = x + dx;
+        if (targetX < 0 || targetX >= grid.getWidth() || !inWindow(targetX, y)) return;
+        byte target = grid.getType(targetX, y);
+        if (target == BlockGrid.BOULDER || target == BlockGrid.LAVA) return;
+        // A driller hovering in a dug shaft cannot dig sideways
+        if (hovering && y < grid.getHeight() - 1 && grid.getType(x, y) == BlockGrid.EMPTY
+                && grid.getType(x, y + 1) == BlockGrid.EMPTY && target != BlockGrid.EMPTY) return;
+        if (grid.isOpen(targetX, y)) {
+            enter(state, stateCost, targetX, y, 0, direction.ordinal());
+        } else {
+            enter(state, stateCost + DIGGING, targetX, y, VALUES[target], direction.ordinal());
+        }
+    }
+
+    /**
+     * Relaxes a move that ends with the driller standing in the given cell or below it after falling.
+     * A move that digs an ore is also scored as a target.
+     * @param from The state the move starts from.
+     * @param moveCost The cost of the state plus the cost of digging, if the move digs.
+     * @param x The x coordinate of the entered cell.
+     * @param y The y coordinate of the entered cell.
+     * @param value The money earned by the move.
+     * @param move The direction ordinal of the move.
+     */
+    private void enter(int from, int moveCost, int x, int y, int value, int move) {
+        int landY = landing(x, y);
+        if (!inWindow(x, landY)) return;
+        int total = moveCost + IDLE + (landY - y) * IDLE;
+        if (total > budget) return;
+        if (value > 0) {
+            double score = (double) value / total;
+            if (score > bestScore) {
+                bestScore = score;
+                bestFrom = from;
+                bestMove = move;
+                bestCost = total;
+            }
+        }
+        reach(stateOf(x, landY, false), total, from, move);
+    }
+
+    /**
+     * Records a route to a state if it is cheaper than the known one.
+     */
+    private void reach(int state, int stateCost, int from, int move) {
+        if (stateCost > budget) return;
+        if (seen[state] != search) {
+            seen[state] = search;
+            cost[state] = stateCost;
+            parent[state] = from;
+            parentMove[state] = (byte) move;
+            push(state);
+        } else if (heapIndex[state] >= 0 && stateCost < cost[state]) {
+            cost[state] = stateCost;
+            parent[state] = from;
+            parentMove[state] = (byte) move;
+            siftUp(heapIndex[state]);
+        }
+    }
+
+    /**
+     * Copies the route to the best target into the plan arrays.
+     */
+    private void buildPlan() {
+        int length = 1;
+        for (int state = bestFrom; state != planStart; state = parent[state]) {
+            length++;
+        }
+        if (planMoves.length < length) {
+            int size = Math.max(length, planMoves.length * 2);
+            planMoves = Arrays.copyOf(planMoves, size);
+            planX = Arrays.copyOf(planX, size);
+            planY = Arrays.copyOf(planY, size);
+            planStates = Arrays.copyOf(planStates, size);
+        }
+        planLength = length;
+        setStep(length - 1, bestFrom, bestMove);
+        int index = length - 2;
+        for (int state = bestFrom; state != planStart; state = parent[state]) {
+            setStep(index--, parent[state], parentMove[state]);
+        }
+    }
+
+    /**
+     * Fills one step of the plan from the state it starts in and its move.
+     */
+    private void setStep(int index, int from, int move) {
+        int cell = from >> 1;
+        int x = windowX + cell % windowWidth;
+        int y = windowY + cell / windowWidth;
+        MineSimulation.Direction direction = DIRECTIONS[move];
+        int enteredX = x + (direction == MineSimulation.Direction.LEFT ? -1 : direction == MineSimulation.Direction.RIGHT ? 1 : 0);
+        int enteredY = y + (direction == MineSimulation.Direction.UP ? -1 : 0);
+        if (direction == MineSimulation.Direction.DOWN && !grid.isOpen(x, y + 1)) {
+            enteredY = y + 1; // Digs the cell below, a move down into an open cell only starts a fall
+        }
+        planMoves[index] = (byte) move;
+        planX[index] = enteredX;
+        planY[index] = enteredY;
+        planStates[index] = direction == MineSimulation.Direction.UP
+                ? stateOf(enteredX, enteredY, true) : stateOf(enteredX, landing(enteredX, enteredY), false);
+    }
+
+    /**
+     * Drops the plan when a cell next to the rest of the route changes, other than the cell the plan just dug.
+     */
+    @Override
+    public void cellChanged(int x, int y, byte oldType, byte newType) {
+        if (!planValid) return;
+        if (cursor > 0 && x == planX[cursor - 1] && y == planY[cursor - 1]) return;
+        for (int i = Math.max(cursor - 1, 0); i < planLength; i++) {
+            int landY = windowY + (planStates[i] >> 1) / windowWidth;
+            if (Math.abs(x - planX[i]) <= 1 && y >= planY[i] - 1 && y <= landY + 1) {
+                planValid = false;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Centers the window on the driller and grows the search arrays if the window is larger than before.
+     */
+    private void placeWindow(int x, int y) {
+        windowWidth = Math.min(grid.getWidth(), MAX_WINDOW);
+        windowHeight = Math.min(grid.getHeight(), MAX_WINDOW);
+        windowX = Math.max(0, Math.min(x - windowWidth / 2, grid.getWidth() - windowWidth));
+        windowY = Math.max(0, Math.min(y - windowHeight / 2, grid.getHeight() - windowHeight));
+        int states = windowWidth * windowHeight * 2;
+        if (cost.length < states) {
+            cost = new int[states];
+            parent = new int[states];
+            parentMove = new byte[states];
+            seen = new int[states];
+            heapIndex = new int[states];
+            search = 0;
+        }
+    }
+
+    private boolean inWindow(int x, int y) {
+        return x >= windowX && x < windowX + windowWidth && y >= windowY && y < windowY + windowHeight;
+    }
+
+    private int stateOf(int x, int y, boolean hovering) {
+        return (((y - windowY) * windowWidth + x - windowX) << 1) | (hovering ? 1 : 0);
+    }
+
+    private boolean isFalling(int x, int y) {
+        return !simulation.isFlying() && y < grid.getHeight() - 1 && grid.isOpen(x, y + 1);
+    }
+
+    /**
+     * Returns the row a driller entering the cell ends up in after gravity.
+     */
+    private int landing(int x, int y) {
+        while (y < grid.getHeight() - 1 && grid.isOpen(x, y + 1)) {
+            y++;
+        }
+        return y;
+    }
+
+    private static boolean isDiggable(byte type) {
+        return type != BlockGrid.SKY && type != BlockGrid.EMPTY && type != BlockGrid.BOULDER && type != BlockGrid.LAVA;
+    }
+
+    private void push(int state) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        heap[heapSize] = state;
+        heapIndex[state] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int index) {
+        int state = heap[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) >> 1;
+            int other = heap[parentIndex];
+            if (cost[other] <= cost[state]) break;
+            heap[index] = other;
+            heapIndex[other] = index;
+            index = parentIndex;
+        }
+        heap[index] = state;
+        heapIndex[state] = index;
+    }
+
+    private void siftDown(int index) {
+        int state = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && cost[heap[child + 1]] < cost[heap[child]]) child++;
+            int other = heap[child];
+            if (cost[other] >= cost[state]) break;
+            heap[index] = other;
+            heapIndex[other] = index;
+            index = child;
+        }
+        heap[index] = state;
+        heapIndex[state] = index;
+    }
+
+    /**
+     * Returns the number of moves in the current plan.
+     */
+    public int getPlanLength() {
+        return planValid ? planLength : 0;
+    }
+
+    /**
+     * Returns the fuel the current plan is expected to use.
+     */
+    public double getPlanFuel() {
+        return planValid ? (double) bestCost / COST_SCALE : 0;
+    }
+
+    /**
+     * Returns the number of states expanded by the last search.
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+}
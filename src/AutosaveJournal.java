@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * AutosaveJournal keeps a running mine on disk without making the game thread wait for the disk.
+ * It listens to the simulation and appends a small record for every changed cell to an in-memory batch.
+ * Once every flush period the batch is closed with a record of the driller's state and counters and handed to a writer thread,
+ * which appends it to the journal file and applies it to its own copy of the mine.
+ * When the journal grows past a limit the writer saves its copy as the base snapshot and empties the journal.
+ *
+ * After a crash the mine is recovered by restoring the base snapshot and replaying the journal up to its last state record,
+ * which is the state at the last flush. Cell records are absolute, so replaying records that are already in the base is harmless.
+ */
+public class AutosaveJournal implements SimulationListener {
+    public static final long FLUSH_PERIOD = 1_000_000_000L; // Nanoseconds between two batches handed to the writer
+    private static final long COMPACT_SIZE = 1 << 20; // Journal size in bytes that triggers a compaction
+    private static final int MAGIC = 0x48554A4C; // "HUJL" at the start of every journal
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 6;
+    private static final byte CELL = 1; // x, y, old type, new type
+    private static final byte STATE = 2; // tick, x, y, fuel, flying, money, haul
+    private static final int CELL_SIZE = 11;
+    private static final int STATE_SIZE = 34;
+
+    private final MineSimulation simulation;
+    private final Path basePath;
+    private final Path journalPath;
+    private final BlockingQueue<Batch> written = new LinkedBlockingQueue<>(); // Batches waiting for the writer
+    private final ConcurrentLinkedQueue<Batch> free = new ConcurrentLinkedQueue<>(); // Batches the writer is done with
+    private final Thread writer;
+    private Batch batch = new Batch();
+    private boolean stateChanged = false;
+    private boolean closed = false;
+
+    /**
+     * Records collected on the game thread between two flushes.
+     */
+    private static final class Batch {
+        private ByteBuffer records = ByteBuffer.allocate(4096);
+        private boolean last; // The writer stops after this batch
+        private boolean delete; // The writer deletes the autosave after this batch
+
+        private ByteBuffer reserve(int size) {
+            if (records.remaining() < size) {
+                records.flip();
+                records = ByteBuffer.allocate(Math.max(records.capacity() * 2, records.limit() + size)).put(records);
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Constructor for AutosaveJournal.
+     * Saves the current mine as the base snapshot, which only blocks before the game starts, and starts the writer thread.
+     * @param directory The directory holding the base snapshot and the journal.
+     * @param simulation The simulation to keep on disk.
+     */
+    public AutosaveJournal(Path directory, MineSimulation simulation) throws IOException {
+        this.simulation = simulation;
+        Files.createDirectories(directory);
+        this.basePath = directory.resolve("base.snapshot");
+        this.journalPath = directory.resolve("journal.bin");
+        WorldSnapshot.save(basePath, simulation);
+        MineSimulation copy = WorldSnapshot.open(basePath).restore(); // The writer's own copy of the mine
+        FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        writeHeader(journal);
+        this.writer = new Thread(() -> writeBatches(journal, copy), "autosave-writer"); // Not a daemon, pending batches are written before exit
+        writer.start();
+    }
+
+    /**
+     * Restores a mine from a base snapshot and a journal.
+     * @param directory The directory holding the base snapshot and the journal.
+     * @return The recovered simulation, or null if the directory has no autosave.
+     */
+    public static MineSimulation recover(Path directory) throws IOException {
+        Path base = directory.resolve("base.snapshot");
+        if (!Files.exists(base)) return null;
+        MineSimulation simulation = WorldSnapshot.open(base).restore();
+        Path journal = directory.resolve("journal.bin");
+        if (!Files.exists(journal)) return simulation;
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if (records.remaining() < HEADER_SIZE || records.getInt() != MAGIC || records.getShort() != VERSION) {
+            return simulation; // The journal was not written completely, the base is all there is
+        }
+        List<int[]> pending = new ArrayList<>(); // Cells of a batch whose state record is not read yet
+        while (records.hasRemaining()) {
+            byte kind = records.get();
+            if (kind == CELL && records.remaining() >= CELL_SIZE - 1) {
+                int x = records.getInt();
+                int y = records.getInt();
+                records.get(); // The old type is kept for tools reading the journal, recovery only needs the new one
+                pending.add(new int[] {x, y, records.get()});
+            } else if (kind == STATE && records.remaining() >= STATE_SIZE - 1) {
+                records.getLong(); // Tick of the flush
+                int x = records.getInt();
+                int y = records.getInt();
+                double fuel = records.getDouble();
+                boolean flying = records.get() != 0;
+                int money = records.getInt();
+                int haul = records.getInt();
+                for (int[] cell : pending) {
+                    simulation.getGrid().setType(cell[0], cell[1], (byte) cell[2]);
+                }
+                pending.clear();
+                simulation.restore(x, y, fuel, flying, money, haul);
+            } else {
+                break; // A record cut short by the crash, the rest was never flushed
+            }
+        }
+        return simulation;
+    }
+
+    /**
+     * Adds a record for a changed cell to the current batch.
+     */
+    @Override
+    public void cellChanged(int x, int y, byte oldType, byte newType) {
+        batch.reserve(CELL_SIZE).put(CELL).putInt(x).putInt(y).put(oldType).put(newType);
+        stateChanged = true;
+    }
+
+    @Override
+    public void drillerMoved(int x, int y, MineSimulation.Pose pose) {
+        stateChanged = true;
+    }
+
+    @Override
+    public void fuelChanged(double fuel) {
+        stateChanged = true;
+    }
+
+    @Override
+    public void moneyChanged(int money, int haul) {
+        stateChanged = true;
+    }
+
+    @Override
+    public void flyingChanged(boolean flying) {
+        stateChanged = true;
+    }
+
+    /**
+     * Closes the current batch with a state record and hands it to the writer thread.
+     * Never waits for the writer, the batch is only queued.
+     * @param tick The game loop tick of the flush.
+     */
+    public void flush(long tick) {
+        if (closed || !stateChanged) return;
+        batch.reserve(STATE_SIZE).put(STATE).putLong(tick).putInt(simulation.getX()).putInt(simulation.getY())
+                .putDouble(simulation.getFuel()).put((byte) (simulation.isFlying() ? 1 : 0))
+                .putInt(simulation.getMoney()).putInt(simulation.getHaul());
+        stateChanged = false;
+        handOver(false, false);
+    }
+
+    /**
+     * Flushes the last batch and lets the writer thread finish, without waiting for it.
+     * @param tick The game loop tick of the flush.
+     * @param delete True to delete the autosave once it is written, for a mine that is over.
+     */
+    public void close(long tick, boolean delete) {
+        if (closed) return;
+        flush(tick);
+        handOver(true, delete);
+        closed = true;
+    }
+
+    /**
+     * Queues the current batch and takes an empty one.
+     */
+    private void handOver(boolean last, boolean delete) {
+        batch.last = last;
+        batch.delete = delete;
+        written.add(batch);
+        Batch next = free.poll();
+        batch = next != null ? next : new Batch();
+    }
+
+    /**
+     * Runs on the writer thread, appends every batch to the journal and compacts it when it grows too large.
+     * @param journal The channel of the journal file.
+     * @param copy The writer's copy of the mine, kept in step with the journal.
+     */
+    private void writeBatches(FileChannel journal, MineSimulation copy) {
+        try (journal) {
+            while (true) {
+                Batch next = written.take();
+                ByteBuffer records = next.records;
+                records.flip();
+                while (records.hasRemaining()) {
+                    journal.write(records);
+                }
+                journal.force(false);
+                apply(records, copy);
+                records.clear();
+                if (next.delete) {
+                    journal.close();
+                    Files.deleteIfExists(journalPath);
+                    Files.deleteIfExists(basePath);
+                    return;
+                }
+                if (next.last) return;
+                free.add(next);
+                if (journal.size() > COMPACT_SIZE) {
+                    WorldSnapshot.save(basePath, copy); // Moved over the old base in one step
+                    journal.truncate(0);
+                    journal.position(0);
+                    writeHeader(journal);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Autosave stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the records of a written batch to the writer's copy of the mine.
+     */
+    private static void apply(ByteBuffer records, MineSimulation copy) {
+        records.rewind();
+        while (records.hasRemaining()) {
+            if (records.get() == CELL) {
+                int x = records.getInt();
+                int y = records.getInt();
+                records.get();
+                copy.getGrid().setType(x, y, records.get());
+            } else {
+                records.getLong();
+                copy.restore(records.getInt(), records.getInt(), records.getDouble(), records.get() != 0, records.getInt(), records.getInt());
+            }
+        }
+    }
+
+    /**
+     * Writes the header of an empty journal.
+     */
+    private static void writeHeader(FileChannel journal) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * BatchEnvironment steps many independent mines at once for training bots, in the style of a vectorized Gym environment.
+ * Every mine is a MineSimulation, so the rules are the ones the game plays by, on a GridSlice of one array that holds
+ * the grids of the whole batch. After every step the drillers' cells, fuel and flying mode, the rewards and the finished
+ * episodes are written to primitive arrays with one entry per mine, which are allocated once and only overwritten.
+ *
+ * An action is the ordinal of a Direction or WAIT, and a step is one move followed by one simulation tick, like BatchRunner.
+ * The reward is the money collected in the step. A mine whose game is over, or that ran for maxTicks, is done:
+ * it starts a new episode in the same step, on a level drawn from levels grids generated up front, and its entries show
+ * the first state of the new episode. Resetting refills the mine's cells and resets its simulation, nothing is allocated.
+ *
+ * The mines are split into one contiguous range per thread. The caller steps the first range and worker threads the rest,
+ * woken by a generation counter and parked between steps, so a step allocates nothing and the results do not depend
+ * on the number of threads. Actions are checked before any mine moves, and a failure on a worker is rethrown by step.
+ * Call close to stop the workers.
+ *
+ * Usage: java BatchEnvironment envs=4096 threads=8 steps=2000 levels=4096 seed=1
+ */
+public class BatchEnvironment implements AutoCloseable {
+    public static final int WAIT = MineSimulation.Direction.values().length; // Action that only lets time pass
+    public static final int ACTIONS = WAIT + 1;
+    public static final int START_X = 1; // Where a driller starts, like in Game
+    public static final int START_Y = 1;
+    private static final MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+    private static final int SPINS = 1 << 10; // Busy waits before a waiting thread parks
+
+    private final int size;
+    private final int cellCount; // Cells of one grid
+    private final long maxTicks;
+    private final int levelCount;
+    private final byte[] levels; // Cells of every level, one after the other
+    private final MineSimulation[] simulations;
+    private final SplittableRandom[] randoms; // Draws the levels of each mine
+
+    // Observations, one entry per mine
+    private final byte[] cells; // Every grid of the batch, row by row, mine after mine
+    private final int[] x;
+    private final int[] y;
+    private final double[] fuel;
+    private final boolean[] flying;
+    private final float[] rewards;
+    private final boolean[] done;
+
+    private final int[] starts; // First mine of every range, and size at the end
+    private final Thread[] workers;
+    private final AtomicInteger running = new AtomicInteger(); // Workers that have not finished the current step
+    private volatile long generation; // Incremented once per step, workers step when it changes
+    private volatile boolean closed = false;
+    private volatile Thread caller;
+    private int[] actions; // Actions of the current step, published by the write of generation
+    private volatile Throwable failure; // First failure of a worker in the current step
+
+    /**
+     * Constructor for BatchEnvironment, generates the levels and starts the worker threads.
+     * @param size The number of mines.
+     * @param width The width of every grid in blocks.
+     * @param height The height of every grid in blocks.
+     * @param levelCount The number of grids episodes are drawn from.
+     * @param seed The seed of the levels, level i is GridInitializer's grid of seed + i, and of the level draws.
+     * @param threads The number of threads stepping the mines, the caller's included.
+     * @param maxTicks The number of ticks after which an episode ends even if the game is not over.
+     */
+    public BatchEnvironment(int size, int width, int height, int levelCount, long seed, int threads, long maxTicks) {
+        this.size = size;
+        this.cellCount = width * height;
+        this.maxTicks = maxTicks;
+        this.levelCount = levelCount;
+        this.levels = new byte[levelCount * cellCount];
+        GridInitializer initializer = new GridInitializer(height, width);
+        IntStream.range(0, levelCount).parallel().forEach(level ->
+                System.arraycopy(initializer.initializeGrid(seed + level).getCells(), 0, levels, level * cellCount, cellCount));
+        this.cells = new byte[size * cellCount];
+        this.simulations = new MineSimulation[size];
+        this.randoms = new SplittableRandom[size];
+        this.x = new int[size];
+        this.y = new int[size];
+        this.fuel = new double[size];
+        this.flying = new boolean[size];
+        this.rewards = new float[size];
+        this.done = new boolean[size];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            simulations[i] = new MineSimulation(new GridSlice(cells, i * cellCount, width, height), START_X, START_Y);
+            randoms[i] = seeds.split();
+        }
+        int ranges = Math.max(1, Math.min(threads, size));
+        this.starts = new int[ranges + 1];
+        for (int range = 0; range <= ranges; range++) {
+            starts[range] = (int) ((long) size * range / ranges);
+        }
+        this.workers = new Thread[ranges - 1];
+        for (int i = 0; i < workers.length; i++) {
+            int range = i + 1;
+            workers[i] = new Thread(() -> work(range), "batch-environment-" + range);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        reset();
+    }
+
+    /**
+     * Starts a new episode in every mine and fills the observations.
+     */
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            startEpisode(i);
+            rewards[i] = 0;
+            done[i] = false;
+            observe(i);
+        }
+    }
+
+    /**
+     * Plays one action in every mine and fills the observations, rewards and done flags.
+     * @param actions One action per mine, the ordinal of a Direction or WAIT. Read during the call only.
+     * @throws IllegalArgumentException If there is not one action per mine or an action is not one of ACTIONS.
+     */
+    public void step(int[] actions) {
+        if (closed) throw new IllegalStateException("The environment is closed");
+        if (actions.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " actions, got " + actions.length);
+        }
+        for (int i = 0; i < size; i++) {
+            if (actions[i] < 0 || actions[i] >= ACTIONS) {
+                throw new IllegalArgumentException("Invalid action " + actions[i] + " for mine " + i);
+            }
+        }
+        this.actions = actions;
+        failure = null;
+        caller = Thread.currentThread();
+        running.set(workers.length);
+        generation++; // Publishes the actions to the workers
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            stepRange(0);
+        } finally {
+            int spins = 0;
+            while (running.get() > 0) { // The workers still use the arrays, even if this range failed
+                if (++spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+        Throwable failure = this.failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+    }
+
+    /**
+     * Runs on a worker thread, steps one range of mines every time the generation changes.
+     */
+    private void work(int range) {
+        long seen = 0;
+        while (true) {
+            int spins = 0;
+            long current;
+            while ((current = generation) == seen) {
+                if (closed) return;
+                if (++spins < SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            seen = current;
+            try {
+                stepRange(range);
+            } catch (Throwable e) {
+                failure = e; // Rethrown by step, the worker keeps serving steps
+            } finally {
+                if (running.decrementAndGet() == 0) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+
+    /**
+     * Steps the mines of one range.
+     */
+    private void stepRange(int range) {
+        int[] actions = this.actions;
+        for (int i = starts[range]; i < starts[range + 1]; i++) {
+            MineSimulation simulation = simulations[i];
+            int moneyBefore = simulation.getMoney();
+            int action = actions[i];
+            if (action != WAIT) {
+                simulation.move(DIRECTIONS[action]);
+            }
+            simulation.tick();
+            rewards[i] = simulation.getMoney() - moneyBefore;
+            done[i] = simulation.isGameOver() || simulation.getTick() >= maxTicks;
+            if (done[i]) {
+                startEpisode(i);
+            }
+            observe(i);
+        }
+    }
+
+    /**
+     * Copies a level drawn from the mine's random generator into its cells and resets its simulation.
+     */
+    private void startEpisode(int i) {
+        int level = randoms[i].nextInt(levelCount);
+        System.arraycopy(levels, level * cellCount, cells, i * cellCount, cellCount);
+        simulations[i].reset(START_X, START_Y);
+    }
+
+    private void observe(int i) {
+        MineSimulation simulation = simulations[i];
+        x[i] = simulation.getX();
+        y[i] = simulation.getY();
+        fuel[i] = simulation.getFuel();
+        flying[i] = simulation.isFlying();
+    }
+
+    /**
+     * Stops the worker threads, the environment cannot be stepped after this.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * Returns the number of mines.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cells of every grid, mine i's cell (x, y) is at i * width * height + y * width + x.
+     */
+    public byte[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the x coordinate of every driller's cell.
+     */
+    public int[] getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of every driller's cell.
+     */
+    public int[] getY() {
+        return y;
+    }
+
+    /**
+     * Returns the fuel level of every driller.
+     */
+    public double[] getFuel() {
+        return fuel;
+    }
+
+    /**
+     * Returns the flying mode of every driller.
+     */
+    public boolean[] getFlying() {
+        return flying;
+    }
+
+    /**
+     * Returns the money every mine collected in the last step.
+     */
+    public float[] getRewards() {
+        return rewards;
+    }
+
+    /**
+     * Returns true for every mine whose episode ended in the last step and that started a new one.
+     */
+    public boolean[] getDone() {
+        return done;
+    }
+
+    /**
+     * Measures how many mine steps per second a batch runs with random actions, every argument is a key=value pair.
+     */
+    public static void main(String[] args) {
+        int envs = 4096;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int steps = 2000;
+        int levels = 4096;
+        long seed = 1;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "envs": envs = Integer.parseInt(pair[1]); break;
+                case "threads": threads = Integer.parseInt(pair[1]); break;
+                case "steps": steps = Integer.parseInt(pair[1]); break;
+                case "levels": levels = Integer.parseInt(pair[1]); break;
+                case "seed": seed = Long.parseLong(pair[1]); break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        try (BatchEnvironment environment = new BatchEnvironment(envs, Main.GRID_WIDTH, Main.GRID_HEIGHT, levels, seed, threads, 10_000)) {
+            int[] actions = new int[envs];
+            SplittableRandom random = new SplittableRandom(seed);
+            long episodes = 0;
+            double reward = 0;
+            long start = System.nanoTime();
+            for (int step = 0; step < steps; step++) {
+                for (int i = 0; i < envs; i++) {
+                    actions[i] = random.nextInt(ACTIONS);
+                }
+                environment.step(actions);
+                for (int i = 0; i < envs; i++) {
+                    reward += environment.getRewards()[i];
+                    if (environment.getDone()[i]) episodes++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "%d mines on %d threads: %.0f steps/s, %d episodes, %.0f reward%n",
+                    envs, threads, (double) envs * steps / seconds, episodes, reward);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * BatchRunner plays many seeded games headlessly with a bot policy and reports how they ended.
+ * Every game has its own grid, simulation and random generator, so games share no mutable state
+ * and run on all cores of a fork-join pool. The results are added to striped counters and histograms.
+ *
+ * Usage: java BatchRunner games=100000 seed=1 policy=random threads=8 out=batch-report
+ * writes batch-report.csv and batch-report.json.
+ */
+public class BatchRunner {
+    private static final long MAX_TICKS = 100_000; // A game always runs out of fuel long before this
+
+    private final int games;
+    private final long seed;
+    private final BotPolicy policy;
+
+    // Aggregated results, safe to update from every worker thread
+    private final LongAdder[] causes = new LongAdder[MineSimulation.Cause.values().length];
+    private final LongAdder totalScore = new LongAdder();
+    private final LongAdder totalMoves = new LongAdder();
+    private final StripedHistogram scores = new StripedHistogram(10_000, 200);
+    private final StripedHistogram fuelAtDeath = new StripedHistogram(25, (int) (MineSimulation.FUEL_LEVEL / 25));
+    private final StripedHistogram ticksSurvived = new StripedHistogram(100, 100);
+
+    /**
+     * Constructor for BatchRunner.
+     * @param games The number of games to play.
+     * @param seed The seed of the first game, game i uses seed + i.
+     * @param policy The policy moving the drillers.
+     */
+    public BatchRunner(int games, long seed, BotPolicy policy) {
+        this.games = games;
+        this.seed = seed;
+        this.policy = policy;
+        for (int i = 0; i < causes.length; i++) {
+            causes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Plays every game on a pool with the given number of threads.
+     * @param threads The number of worker threads.
+     */
+    public void run(int threads) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, games).parallel().forEach(this::playGame)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays one game until it is over: one bot move, then one simulation tick.
+     * @param index The index of the game.
+     */
+    private void playGame(int index) {
+        long gameSeed = seed + index;
+        MineSimulation simulation = new MineSimulation(new GridInitializer(Main.GRID_HEIGHT, Main.GRID_WIDTH).initializeGrid(gameSeed), 1, 1);
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        long moves = 0;
+        while (!simulation.isGameOver() && simulation.getTick() < MAX_TICKS) {
+            simulation.move(policy.next(simulation, random));
+            moves++;
+            simulation.tick();
+        }
+        if (simulation.getCause() != null) {
+            causes[simulation.getCause().ordinal()].increment();
+        }
+        totalScore.add(simulation.getMoney());
+        totalMoves.add(moves);
+        scores.record(simulation.getMoney());
+        fuelAtDeath.record(simulation.getFuel());
+        ticksSurvived.record(simulation.getTick());
+    }
+
+    /**
+     * Writes the histograms as CSV, one row per bucket.
+     * @param path The file to write.
+     */
+    public void writeCsv(Path path) throws IOException {
+        StringBuilder csv = new StringBuilder("metric,bucket_start,count\n");
+        appendCsv(csv, "score", scores);
+        appendCsv(csv, "fuel_at_death", fuelAtDeath);
+        appendCsv(csv, "ticks_survived", ticksSurvived);
+        for (MineSimulation.Cause cause : MineSimulation.Cause.values()) {
+            csv.append("cause,").append(cause.name().toLowerCase(Locale.ROOT)).append(',').append(causes[cause.ordinal()].sum()).append('\n');
+        }
+        Files.writeString(path, csv);
+    }
+
+    private static void appendCsv(StringBuilder csv, String metric, StripedHistogram histogram) {
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            if (histogram.getBucket(i) == 0) continue;
+            csv.append(metric).append(',').append((long) histogram.getBucketStart(i)).append(',').append(histogram.getBucket(i)).append('\n');
+        }
+    }
+
+    /**
+     * Writes the totals, the causes of death and the percentiles of every histogram as JSON.
+     * @param path The file to write.
+     */
+    public void writeJson(Path path) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"games\": ").append(games).append(",\n");
+        json.append("  \"seed\": ").append(seed).append(",\n");
+        json.append("  \"meanScore\": ").append(String.format(Locale.ROOT, "%.2f", (double) totalScore.sum() / games)).append(",\n");
+        json.append("  \"moves\": ").append(totalMoves.sum()).append(",\n");
+        json.append("  \"causes\": {");
+        for (MineSimulation.Cause cause : MineSimulation.Cause.values()) {
+            json.append(cause.ordinal() == 0 ? "" : ", ").append('"').append(cause.name().toLowerCase(Locale.ROOT)).append("\": ").append(causes[cause.ordinal()].sum());
+        }
+        json.append("},\n");
+        appendJson(json, "score", scores, ",\n");
+        appendJson(json, "fuelAtDeath", fuelAtDeath, ",\n");
+        appendJson(json, "ticksSurvived", ticksSurvived, "\n");
+        json.append("}\n");
+        Files.writeString(path, json);
+    }
+
+    private static void appendJson(StringBuilder json, String metric, StripedHistogram histogram, String end) {
+        json.append("  \"").append(metric).append("\": {");
+        double[] percentiles = {50, 90, 99, 100};
+        for (int i = 0; i < percentiles.length; i++) {
+            json.append(i == 0 ? "" : ", ").append("\"p").append((int) percentiles[i]).append("\": ").append((long) histogram.getPercentile(percentiles[i]));
+        }
+        json.append('}').append(end);
+    }
+
+    /**
+     * Runs a batch from the command line, every argument is a key=value pair.
+     */
+    public static void main(String[] args) throws Exception {
+        int games = 10_000;
+        long seed = 1;
+        String policy = "random";
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = "batch-report";
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "games": games = Integer.parseInt(pair[1]); break;
+                case "seed": seed = Long.parseLong(pair[1]); break;
+                case "policy": policy = pair[1]; break;
+                case "threads": threads = Integer.parseInt(pair[1]); break;
+                case "out": out = pair[1]; break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        BatchRunner runner = new BatchRunner(games, seed, BotPolicy.named(policy));
+        long start = System.nanoTime();
+        runner.run(threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        runner.writeCsv(Paths.get(out + ".csv"));
+        runner.writeJson(Paths.get(out + ".json"));
+        System.out.printf(Locale.ROOT, "%d games on %d threads in %.2f s (%.0f games/s)%n", games, threads, seconds, games / seconds);
+    }
+}
@@ -2,19 +2,30 @@
  * This class represents a block in the grid.
  */
 public abstract class Block {
+    private final byte type;
     private int value;
     private int haul;
 
     /**
      * Constructor for the Block class.
+     * @param type The type code of the block, one of the BlockGrid type constants.
      * @param value The value of the block.
      * @param haul The haul of the block.
      */
-    public Block(int value, int haul) {
+    public Block(byte type, int value, int haul) {
+        this.type = type;
         this.value = value;
         this.haul = haul;
     }
 
+    /**
+     * Getter for the type code of the block.
+     * @return The type code stored for this block in a BlockGrid.
+     */
+    public byte getType() {
+        return type;
+    }
+
     /**
      * Getter for the value of the block.
      * @return The value of the block.
@@ -48,7 +59,7 @@ class SoilBlock extends Block {
      * It initializes the block with a value and haul of 0.
      */
     public SoilBlock() {
-        super(0, 0);
+        super(BlockGrid.SOIL, 0, 0);
     }
 
     /**
@@ -69,7 +80,7 @@ class TopBlock extends Block {
      * It initializes the block with a value and haul of 0.
      */
     public TopBlock() {
-        super(0, 0);
+        super(BlockGrid.TOP, 0, 0);
     }
 
     /**
@@ -87,7 +98,7 @@ class TopBlock extends Block {
  */
 class LavaBlock extends Block {
     public LavaBlock() {
-        super(0, 0);
+        super(BlockGrid.LAVA, 0, 0);
     }
 
     /**
@@ -108,7 +119,7 @@ class SkyBlock extends Block {
      * It initializes the block with a value and haul of 0.
      */
     public SkyBlock() {
-        super(0, 0);
+        super(BlockGrid.SKY, 0, 0);
     }
 
     /**
@@ -129,7 +140,7 @@ class BoulderBlock extends Block {
      * It initializes the block with a value and haul of 0.
      */
     public BoulderBlock() {
-        super(0, 0);
+        super(BlockGrid.BOULDER, 0, 0);
     }
 
     /**
@@ -150,7 +161,7 @@ class EmptyBlock extends Block {
      * It initializes the block with a value and haul of 0.
      */
     public EmptyBlock() {
-        super(0, 0);
+        super(BlockGrid.EMPTY, 0, 0);
     }
 
     /**
@@ -173,7 +184,7 @@ class DiamondBlock extends Block {
      * It initializes the block with a value and a haul.
      */
     public DiamondBlock() {
-        super(VALUE, HAUL);
+        super(BlockGrid.DIAMOND, VALUE, HAUL);
     }
 
     /**
@@ -196,7 +207,7 @@ class EmeraldBlock extends Block {
      * It initializes the block with a value of 60 and a haul of 10.
      */
     public EmeraldBlock() {
-        super(VALUE, HAUL);
+        super(BlockGrid.EMERALD, VALUE, HAUL);
     }
 
     /**
@@ -219,7 +230,7 @@ class AmazoniteBlock extends Block {
      * It initializes the block with a value and a haul.
      */
     public AmazoniteBlock() {
-        super(VALUE, HAUL);
+        super(BlockGrid.AMAZONITE, VALUE, HAUL);
     }
 
     /**
@@ -242,7 +253,7 @@ class PlatinumBlock extends Block {
      * It initializes the block with a value of 50 and a haul of 20.
      */
     public PlatinumBlock() {
-        super(VALUE, HAUL);
+        super(BlockGrid.PLATINUM, VALUE, HAUL);
     }
 
     /**
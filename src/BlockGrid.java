@@ -0,0 +1,121 @@
+/**
+ * BlockGrid stores the mine as one block type code per cell in a row-major byte array.
+ * Cells are resolved to shared Block flyweights, so the grid itself costs a single byte per cell
+ * and changing a cell never allocates.
+ */
+public class BlockGrid implements MineGrid {
+    // Block type codes, they are also the indices of the flyweight table below
+    public static final byte SKY = 0;
+    public static final byte TOP = 1;
+    public static final byte SOIL = 2;
+    public static final byte BOULDER = 3;
+    public static final byte EMPTY = 4;
+    public static final byte LAVA = 5;
+    public static final byte DIAMOND = 6;
+    public static final byte EMERALD = 7;
+    public static final byte AMAZONITE = 8;
+    public static final byte PLATINUM = 9;
+    public static final int TYPE_COUNT = 10;
+
+    // One shared immutable instance per block type, in the same order as the type codes
+    private static final Block[] FLYWEIGHTS = {
+            new SkyBlock(), new TopBlock(), new SoilBlock(), new BoulderBlock(), new EmptyBlock(),
+            new LavaBlock(), new DiamondBlock(), new EmeraldBlock(), new AmazoniteBlock(), new PlatinumBlock()
+    };
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+
+    /**
+     * Constructor for BlockGrid. Every cell starts as a sky block.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    public BlockGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new byte[width * height];
+    }
+
+    /**
+     * Returns the shared block instance for a type code.
+     * @param type The type code of the block.
+     * @return The flyweight block for the type code.
+     */
+    public static Block blockOf(byte type) {
+        return FLYWEIGHTS[type];
+    }
+
+    /**
+     * Returns the row-major array backing the grid, for copying the whole grid at once.
+     * Changes to the array are changes to the grid.
+     * @return The type code of every cell, row by row.
+     */
+    public byte[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Getter for the width of the grid.
+     * @return The width of the grid in blocks.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the height of the grid.
+     * @return The height of the grid in blocks.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The type code of the block.
+     */
+    @Override
+    public byte getType(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    /**
+     * Returns the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The shared block instance for the cell's type.
+     */
+    @Override
+    public Block get(int x, int y) {
+        return FLYWEIGHTS[cells[y * width + x]];
+    }
+
+    /**
+     * Sets the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @param type The new type code of the block.
+     */
+    @Override
+    public void setType(int x, int y, byte type) {
+        cells[y * width + x] = type;
+    }
+
+    /**
+     * Checks if the driller can move through the block at the given coordinates without digging.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return True if the block is sky or empty.
+     */
+    @Override
+    public boolean isOpen(int x, int y) {
+        byte type = cells[y * width + x];
+        return type == SKY || type == EMPTY;
+    }
+}
@@ -0,0 +1,191 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * BotClient is a simulated player of a MineServer. It connects over TCP, keeps a copy of the mine from the server's
+ * WorldDelta messages and moves its driller with a BotPolicy once every moveTicks server ticks.
+ * The copy is a MineSimulation that is never stepped, it only gives the policy the grid and the driller's cell.
+ * When its driller's game is over the bot disconnects and joins again with a new driller, so a swarm keeps the server busy.
+ *
+ * Usage: java BotClient host=127.0.0.1 port=7777 bots=300 policy=digger moveTicks=6 seed=1
+ */
+public class BotClient implements Runnable {
+    private static final long RETRY_DELAY = 100; // Milliseconds to wait before connecting again after a failure
+    private static final int READ_TIMEOUT = 5000; // Milliseconds without a message before the connection is given up
+
+    private final InetSocketAddress address;
+    private final BotPolicy policy;
+    private final int moveTicks;
+    private final SplittableRandom random;
+    private volatile boolean running = true;
+    private volatile long games;
+    private volatile long moves;
+
+    /**
+     * Constructor for BotClient.
+     * @param address The address of the server.
+     * @param policy The policy moving the driller.
+     * @param moveTicks Server ticks between two moves.
+     * @param seed The seed of the bot's random generator.
+     */
+    public BotClient(InetSocketAddress address, BotPolicy policy, int moveTicks, long seed) {
+        this.address = address;
+        this.policy = policy;
+        this.moveTicks = moveTicks;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Starts a number of bots, each on a thread of its own.
+     * @param count The number of bots.
+     * @param address The address of the server.
+     * @param policy The policy moving the drillers.
+     * @param moveTicks Server ticks between two moves of a bot.
+     * @param seed The seed of the first bot, bot i uses seed + i.
+     * @return The bots, stop them with stop.
+     */
+    public static List<BotClient> startBots(int count, InetSocketAddress address, BotPolicy policy, int moveTicks, long seed) {
+        List<BotClient> bots = new ArrayList<>();
+        if (count == 0) return bots;
+        ExecutorService pool = Executors.newFixedThreadPool(count, task -> {
+            Thread thread = new Thread(task, "bot-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < count; i++) {
+            BotClient bot = new BotClient(address, policy, moveTicks, seed + i);
+            bots.add(bot);
+            pool.execute(bot);
+        }
+        pool.shutdown(); // The threads end when their bots stop
+        return bots;
+    }
+
+    /**
+     * Plays games until the bot is stopped.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                playGame();
+            } catch (IOException e) {
+                if (!running) return;
+                try {
+                    Thread.sleep(RETRY_DELAY); // The server is not up yet or went away
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins the server with a new driller and plays until its game is over.
+     */
+    private void playGame() throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT); // The server sends a message every tick
+            socket.connect(address);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            in.readInt(); // Length
+            if (in.readByte() != WorldDelta.WELCOME) throw new IOException("Not a mine server");
+            int number = in.readInt();
+            BlockGrid grid = new BlockGrid(in.readInt(), in.readInt());
+            in.readLong(); // Tick
+            in.readFully(grid.getCells());
+            in.skipBytes(in.readInt() * WorldDelta.DRILLER_SIZE); // Other drillers, the policies do not look at them
+            MineSimulation copy = null; // Created once the server sent the driller's cell
+            long nextMove = 0;
+            while (running) {
+                in.readInt(); // Length
+                if (in.readByte() != WorldDelta.DELTA) throw new IOException("Unknown message");
+                long tick = in.readLong();
+                for (int cells = in.readInt(); cells > 0; cells--) {
+                    grid.setType(in.readInt(), in.readInt(), in.readByte());
+                }
+                for (int drillers = in.readInt(); drillers > 0; drillers--) {
+                    int driller = in.readInt();
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    in.readByte(); // Pose
+                    byte state = in.readByte();
+                    int money = in.readInt();
+                    if (driller != number) continue;
+                    if (state != WorldDelta.PLAYING) { // Game over, join again with a new driller
+                        games++;
+                        return;
+                    }
+                    if (copy == null) {
+                        copy = new MineSimulation(grid, x, y);
+                    }
+                    copy.restore(x, y, MineSimulation.FUEL_LEVEL, false, money, 0);
+                }
+                if (copy != null && tick >= nextMove) {
+                    out.write(policy.next(copy, random).ordinal());
+                    moves++;
+                    nextMove = tick + moveTicks;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the bot after the message it is reading.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Returns the number of games the bot played to the end.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of moves the bot sent.
+     */
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Runs bots against a server from the command line, every argument is a key=value pair.
+     * The bots play until the process is killed.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 7777;
+        int bots = 100;
+        String policy = "digger";
+        int moveTicks = 6;
+        long seed = 1;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "host": host = pair[1]; break;
+                case "port": port = Integer.parseInt(pair[1]); break;
+                case "bots": bots = Integer.parseInt(pair[1]); break;
+                case "policy": policy = pair[1]; break;
+                case "moveTicks": moveTicks = Integer.parseInt(pair[1]); break;
+                case "seed": seed = Long.parseLong(pair[1]); break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        startBots(bots, new InetSocketAddress(host, port), BotPolicy.named(policy), moveTicks, seed);
+        Thread.currentThread().join(); // The bot threads are daemons
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.SplittableRandom;
+
+/**
+ * BotPolicy decides the moves of a driller that is not controlled by a player.
+ * Policies must not keep state between calls, so one instance can play many games at once on different threads.
+ */
+@FunctionalInterface
+public interface BotPolicy {
+    MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+
+    /**
+     * Moves in a random direction every time.
+     */
+    BotPolicy RANDOM = (simulation, random) -> DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+
+    /**
+     * Digs straight down, and steps to a random side when a boulder or lava is below.
+     * Never moves into lava it can see.
+     */
+    BotPolicy DIGGER = (simulation, random) -> {
+        MineGrid grid = simulation.getGrid();
+        int x = simulation.getX();
+        int y = simulation.getY();
+        if (y + 1 < grid.getHeight()) {
+            byte below = grid.getType(x, y + 1);
+            if (below != BlockGrid.BOULDER && below != BlockGrid.LAVA) {
+                return MineSimulation.Direction.DOWN;
+            }
+        }
+        boolean leftSafe = x > 0 && grid.getType(x - 1, y) != BlockGrid.LAVA;
+        boolean rightSafe = x + 1 < grid.getWidth() && grid.getType(x + 1, y) != BlockGrid.LAVA;
+        if (leftSafe && (!rightSafe || random.nextBoolean())) {
+            return MineSimulation.Direction.LEFT;
+        }
+        return rightSafe ? MineSimulation.Direction.RIGHT : MineSimulation.Direction.UP;
+    };
+
+    /**
+     * Chooses the next move.
+     * @param simulation The game the driller is in.
+     * @param random The random generator of this game.
+     * @return The direction to move in.
+     */
+    MineSimulation.Direction next(MineSimulation simulation, SplittableRandom random);
+
+    /**
+     * Finds a policy by name.
+     * @param name "random" or "digger".
+     * @return The policy with that name.
+     */
+    static BotPolicy named(String name) {
+        switch (name) {
+            case "random":
+                return RANDOM;
+            case "digger":
+                return DIGGER;
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Camera keeps track of the part of the grid that is visible on the screen.
+ * It follows the driller and is kept inside the grid, so a grid that fits on the screen never scrolls.
+ */
+public class Camera {
+    private final int viewWidth;
+    private final int viewHeight;
+    private int x;
+    private int y;
+
+    /**
+     * Constructor for Camera.
+     * @param viewWidth The number of visible columns.
+     * @param viewHeight The number of visible rows.
+     */
+    public Camera(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    /**
+     * Centers the camera on the driller as far as the edges of the grid allow.
+     * @param driller The driller to follow.
+     * @param grid The grid the driller is in.
+     * @return True if the camera moved.
+     */
+    public boolean follow(Driller driller, MineGrid grid) {
+        int newX = clamp(driller.getX() - viewWidth / 2, grid.getWidth() - viewWidth);
+        int newY = clamp(driller.getY() - viewHeight / 2, grid.getHeight() - viewHeight);
+        if (newX == x && newY == y) return false;
+        x = newX;
+        y = newY;
+        return true;
+    }
+
+    /**
+     * Limits a camera coordinate to the range from 0 to max.
+     */
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    /**
+     * Returns the column of the leftmost visible cell.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the row of the topmost visible cell.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the number of visible columns.
+     */
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    /**
+     * Returns the number of visible rows.
+     */
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Checks if the cell at the given coordinates is on the screen.
+     * @param cellX The x coordinate of the cell.
+     * @param cellY The y coordinate of the cell.
+     * @return True if the cell is visible.
+     */
+    public boolean contains(int cellX, int cellY) {
+        return cellX >= x && cellX < x + viewWidth && cellY >= y && cellY < y + viewHeight;
+    }
+}
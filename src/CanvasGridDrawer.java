@@ -0,0 +1,152 @@
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * CanvasGridDrawer draws the game grid on two layered canvases instead of one node per tile.
+ * The lower canvas holds the tiles and the upper one holds the driller, and after the first draw
+ * only the rectangles of changed cells and of the driller's old and new image are painted again.
+ * The canvases are the size of the camera's view, the whole view is painted again only when the camera scrolls.
+ */
+public class CanvasGridDrawer implements GridRenderer {
+    private static final Color BACKGROUND = Color.web("#c07e3d"); // Same color as the game scene background
+
+    private final Pane gameScene;
+    private final Driller driller;
+    private final MineGrid grid;
+    private final SpriteAtlas sprites;
+    private final Camera camera;
+    private final Canvas tileLayer;
+    private final Canvas drillerLayer;
+
+    // Rectangle of the last painted driller image, cleared before the driller is painted again
+    private double drillerX, drillerY, drillerWidth, drillerHeight;
+
+    /**
+     * Constructor for CanvasGridDrawer class.
+     * Initializes the game scene, driller, grid, and creates the canvases sized to the camera's view.
+     */
+    public CanvasGridDrawer(Pane gameScene, Driller driller, MineGrid grid) {
+        this.gameScene = gameScene;
+        this.driller = driller;
+        this.grid = grid;
+        this.sprites = SpriteAtlas.getShared();
+        this.camera = new Camera(Main.GRID_WIDTH, Main.GRID_HEIGHT);
+        this.tileLayer = new Canvas(camera.getViewWidth() * Main.BLOCK_SIZE, camera.getViewHeight() * Main.BLOCK_SIZE);
+        this.drillerLayer = new Canvas(camera.getViewWidth() * Main.BLOCK_SIZE, camera.getViewHeight() * Main.BLOCK_SIZE);
+    }
+
+    /**
+     * Paints every visible cell on the tile canvas and the driller on the driller canvas.
+     * The canvases are the only nodes the grid adds to the scene.
+     */
+    @Override
+    public void drawGrid() {
+        GameEvents.RenderPass event = new GameEvents.RenderPass();
+        event.begin();
+        gameScene.getChildren().clear(); // Clear the scene before drawing
+        camera.follow(driller, grid);
+        drawView();
+        drawDriller(driller);
+        gameScene.getChildren().addAll(tileLayer, drillerLayer);
+        commitPass(event, "drawGrid");
+    }
+
+    /**
+     * Commits a render pass event if it is enabled and long enough.
+     */
+    private static void commitPass(GameEvents.RenderPass event, String pass) {
+        if (event.shouldCommit()) {
+            event.renderer = "canvas";
+            event.pass = pass;
+            event.commit();
+        }
+    }
+
+    /**
+     * Paints every cell under the camera and clears the driller canvas.
+     */
+    private void drawView() {
+        GraphicsContext gc = tileLayer.getGraphicsContext2D();
+        gc.setFill(BACKGROUND); // Parts of the view outside a small grid show the background
+        gc.fillRect(0, 0, tileLayer.getWidth(), tileLayer.getHeight());
+        int endX = Math.min(camera.getX() + camera.getViewWidth(), grid.getWidth());
+        int endY = Math.min(camera.getY() + camera.getViewHeight(), grid.getHeight());
+        for (int y = camera.getY(); y < endY; y++) {
+            for (int x = camera.getX(); x < endX; x++) {
+                redrawCell(x, y);
+            }
+        }
+        drillerLayer.getGraphicsContext2D().clearRect(0, 0, drillerLayer.getWidth(), drillerLayer.getHeight());
+        drillerWidth = 0;
+        drillerHeight = 0;
+    }
+
+    /**
+     * Paints a single cell of the tile canvas if it is under the camera.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    @Override
+    public void redrawCell(int x, int y) {
+        if (!camera.contains(x, y)) return; // Painted from the grid when it scrolls into view
+        GraphicsContext gc = tileLayer.getGraphicsContext2D();
+        double px = (x - camera.getX()) * Main.BLOCK_SIZE;
+        double py = (y - camera.getY()) * Main.BLOCK_SIZE;
+        byte type = grid.getType(x, y);
+        gc.setFill(type == BlockGrid.SKY ? Color.SKYBLUE : BACKGROUND); // Sky has no image file, it is a plain color
+        gc.fillRect(px, py, Main.BLOCK_SIZE, Main.BLOCK_SIZE);
+        if (type != BlockGrid.SKY && type != BlockGrid.EMPTY) { // Dug cells show the background like in node mode
+            drawSprite(gc, grid.get(x, y).getImageFile(), px, py);
+        }
+    }
+
+    /**
+     * Clears the driller's previous rectangle and paints it at its current position.
+     * Paints the whole view again first when the camera has to follow the driller.
+     * @param driller The driller to draw.
+     */
+    @Override
+    public void drawDriller(Driller driller) {
+        if (camera.follow(driller, grid)) {
+            GameEvents.RenderPass event = new GameEvents.RenderPass();
+            event.begin();
+            drawView();
+            commitPass(event, "scroll");
+        }
+        GraphicsContext gc = drillerLayer.getGraphicsContext2D();
+        gc.clearRect(drillerX, drillerY, drillerWidth, drillerHeight);
+        Rectangle2D region = sprites.getRegion(driller.getSprite());
+        drillerX = driller.getViewX() - camera.getX() * Main.BLOCK_SIZE;
+        drillerY = driller.getViewY() - camera.getY() * Main.BLOCK_SIZE;
+        drillerWidth = region == null ? 0 : region.getWidth();
+        drillerHeight = region == null ? 0 : region.getHeight();
+        drawSprite(gc, driller.getSprite(), drillerX, drillerY);
+    }
+
+    /**
+     * Takes the canvases off the scene. They are only two nodes, so there is nothing worth pooling.
+     */
+    @Override
+    public void release() {
+        gameScene.getChildren().removeAll(tileLayer, drillerLayer);
+    }
+
+    /**
+     * Copies a sprite from the atlas onto a canvas at its natural size.
+     * @param gc The graphics context of the canvas.
+     * @param sprite The image file of the sprite.
+     * @param px The x position in pixels.
+     * @param py The y position in pixels.
+     */
+    private void drawSprite(GraphicsContext gc, String sprite, double px, double py) {
+        Rectangle2D region = sprites.getRegion(sprite);
+        if (region == null) return; // Sprite is not packed in the atlas
+        Image atlas = sprites.getAtlasImage();
+        gc.drawImage(atlas, region.getMinX(), region.getMinY(), region.getWidth(), region.getHeight(),
+                px, py, region.getWidth(), region.getHeight());
+    }
+}
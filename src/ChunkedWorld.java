@@ -0,0 +1,199 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ChunkedWorld is a grid backend for mines that are too large to keep in memory at once.
+ * The world is split into square chunks that are generated on demand the first time one of their cells is read.
+ * Only the most recently used chunks stay loaded, the rest are evicted in least recently used order.
+ * An evicted chunk that was never changed is dropped and generated again from the seed when needed,
+ * a chunk that was dug into is kept aside so the player's changes are not lost.
+ * A world resumed from a WorldSnapshot reads the chunks it saved from the snapshot instead of generating them.
+ */
+public class ChunkedWorld implements MineGrid {
+    public static final int CHUNK_SHIFT = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // Chunks are 32x32 blocks
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    public static final int DEFAULT_CACHE_SIZE = 64; // Loaded chunks kept before the least recently used one is evicted
+    private static final long NO_CHUNK = Long.MIN_VALUE;
+
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final GridInitializer generator;
+    private final Map<Long, Chunk> loaded; // Iterates from the least to the most recently used chunk
+    private final Map<Long, Chunk> modified = new HashMap<>(); // Evicted chunks that were changed after generation
+    private final WorldSnapshot base; // Snapshot the world was resumed from, null for a new world
+
+    // The last chunk that was read, most reads are for cells next to each other
+    private long lastKey = NO_CHUNK;
+    private Chunk lastChunk;
+
+    /**
+     * One chunk of the world, stored row-major like a BlockGrid.
+     */
+    private static final class Chunk {
+        private final byte[] cells = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        private boolean modified; // True if the chunk differs from what the generator produces
+    }
+
+    /**
+     * Visits the cells of one chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkVisitor {
+        void visit(int chunkX, int chunkY, byte[] cells);
+    }
+
+    /**
+     * Constructor for ChunkedWorld.
+     * @param width The width of the world in blocks.
+     * @param height The height of the world in blocks.
+     * @param seed The seed the chunks are generated from.
+     * @param cacheSize The number of chunks kept loaded.
+     */
+    public ChunkedWorld(int width, int height, long seed, int cacheSize) {
+        this(width, height, seed, cacheSize, null);
+    }
+
+    /**
+     * Constructor for a ChunkedWorld resumed from a snapshot.
+     * @param width The width of the world in blocks.
+     * @param height The height of the world in blocks.
+     * @param seed The seed the chunks are generated from.
+     * @param cacheSize The number of chunks kept loaded.
+     * @param base The snapshot holding the chunks that differ from the generator, or null.
+     */
+    public ChunkedWorld(int width, int height, long seed, int cacheSize, WorldSnapshot base) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.base = base;
+        this.generator = new GridInitializer(height, width);
+        this.loaded = new LinkedHashMap<>(cacheSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= cacheSize) return false;
+                if (eldest.getValue().modified) { // Keep the player's changes
+                    modified.put(eldest.getKey(), eldest.getValue());
+                }
+                if (eldest.getKey() == lastKey) {
+                    lastKey = NO_CHUNK;
+                    lastChunk = null;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Packs chunk coordinates into a single key.
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkY The y coordinate of the chunk.
+     * @return The key of the chunk.
+     */
+    public static long chunkKey(int chunkX, int chunkY) {
+        return ((long) chunkY << 32) | (chunkX & 0xffffffffL);
+    }
+
+    /**
+     * Returns the chunk with the given coordinates, loading or generating it if needed.
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkY The y coordinate of the chunk.
+     * @return The loaded chunk.
+     */
+    private Chunk chunk(int chunkX, int chunkY) {
+        long key = chunkKey(chunkX, chunkY);
+        if (key == lastKey) return lastChunk;
+        Chunk chunk = loaded.get(key);
+        if (chunk == null) {
+            chunk = modified.remove(key); // Chunk was dug into before it was evicted
+            if (chunk == null) {
+                GameEvents.ChunkLoad event = new GameEvents.ChunkLoad();
+                event.begin();
+                chunk = new Chunk();
+                // A chunk read from the snapshot is not marked modified, it can be dropped and read again
+                boolean fromSnapshot = base != null && base.readChunk(chunkX, chunkY, chunk.cells);
+                if (!fromSnapshot) {
+                    generator.fillChunk(chunk.cells, chunkX << CHUNK_SHIFT, chunkY << CHUNK_SHIFT, CHUNK_SIZE, seed);
+                }
+                if (event.shouldCommit()) {
+                    event.chunkX = chunkX;
+                    event.chunkY = chunkY;
+                    event.fromSnapshot = fromSnapshot;
+                    event.commit();
+                }
+            }
+            loaded.put(key, chunk);
+        }
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    /**
+     * Getter for the seed of the world.
+     * @return The seed the chunks are generated from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Visits every chunk that differs from what the generator produces, row by row.
+     * These are the chunks that were changed in memory and the chunks read from the snapshot the world was resumed from.
+     * The order of the loaded chunks is not changed.
+     * @param visitor The visitor called with the cells of each chunk, the array must not be kept.
+     */
+    public void forEachChangedChunk(ChunkVisitor visitor) {
+        Map<Long, Chunk> changed = new HashMap<>(modified);
+        for (Map.Entry<Long, Chunk> entry : loaded.entrySet()) {
+            if (entry.getValue().modified) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        byte[] saved = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        int chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                Chunk chunk = changed.get(chunkKey(chunkX, chunkY));
+                if (chunk != null) {
+                    visitor.visit(chunkX, chunkY, chunk.cells);
+                } else if (base != null && base.readChunk(chunkX, chunkY, saved)) {
+                    visitor.visit(chunkX, chunkY, saved);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of chunks currently held in memory.
+     * @return The number of loaded chunks plus the number of evicted chunks that were changed.
+     */
+    public int getChunksInMemory() {
+        return loaded.size() + modified.size();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public byte getType(int x, int y) {
+        return chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT).cells[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    @Override
+    public void setType(int x, int y, byte type) {
+        Chunk chunk = chunk(x >> CHUNK_SHIFT, y >> CHUNK_SHIFT);
+        chunk.cells[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)] = type;
+        chunk.modified = true;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CommandQueue carries move commands from whoever makes them to the game loop that plays them.
+ * It is a bounded ring that any number of threads can offer to without locks, and a single consumer polls.
+ * Every slot has a sequence number that says whether it is free for the producer of a round or full for the consumer,
+ * so an offer takes one compare-and-set on the tail and a poll takes none on the ring, it only writes the slot's sequence.
+ * Both also update the pending count of the command's direction atomically, an increment on offer and a decrement on poll.
+ * The queue also counts the pending commands of each direction, so a repeated key can be dropped while its move is still waiting.
+ */
+public class CommandQueue {
+    private static final MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences; // Equal to the position when a slot is free, position + 1 when it is full
+    private final byte[] commands; // Direction ordinals, published by the write of the slot's sequence
+    private final AtomicLong tail = new AtomicLong(); // Position of the next offer
+    private long head; // Position of the next poll, only the consumer uses it
+    private final AtomicIntegerArray pending = new AtomicIntegerArray(DIRECTIONS.length);
+
+    /**
+     * Constructor for CommandQueue.
+     * @param capacity The number of commands the queue holds, rounded up to a power of two.
+     */
+    public CommandQueue(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        this.commands = new byte[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a command, from any thread. Never waits.
+     * @param direction The direction to move in.
+     * @return False if the queue is full and the command was dropped.
+     */
+    public boolean offer(MineSimulation.Direction direction) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) { // Slot is free for this round
+                if (tail.compareAndSet(position, position + 1)) {
+                    commands[index] = (byte) direction.ordinal();
+                    pending.incrementAndGet(direction.ordinal());
+                    sequences.set(index, position + 1); // Hands the slot to the consumer
+                    return true;
+                }
+                position = tail.get(); // Another producer took the slot
+            } else if (difference < 0) { // The consumer has not emptied the slot from the previous round
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest command, only from the consumer's thread.
+     * @return The direction, or null if the queue is empty.
+     */
+    public MineSimulation.Direction poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) return null; // Not written yet
+        int command = commands[index];
+        sequences.set(index, head + capacity); // Frees the slot for the next round
+        head++;
+        pending.decrementAndGet(command);
+        return DIRECTIONS[command];
+    }
+
+    /**
+     * Returns the number of commands waiting, only from the consumer's thread.
+     */
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /**
+     * Returns true if a command of the direction is waiting to be played.
+     * @param direction The direction.
+     */
+    public boolean isPending(MineSimulation.Direction direction) {
+        return pending.get(direction.ordinal()) > 0;
+    }
+}
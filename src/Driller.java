@@ -1,260 +1,151 @@
-import javafx.animation.AnimationTimer;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-
 /**
  * Driller class represents a driller in the game.
- * It contains methods to control the driller's movement and fuel consumption.
+ * The rules for moving, digging and fuel consumption are in MineSimulation, this class passes the player's
+ * moves to it and keeps the image the driller is drawn with.
  */
 public class Driller {
-    // Constants for fuel consumption and gravity delay
-    private static final double FUEL_CONSUMPTION = 0.25;
-    private static final double FUEL_CONSUMPTION_FLYING = 2;
-    private static final double FUEL_CONSUMPTION_DIGGING = 50;
-    private static final double FUEL_LEVEL = 1500;
-    private static final int GRAVITY_DELAY = 300_000_000;
-    private static final int FUEL_DELAY = 300_000_000;
-
-    // Driller's position and image views
-    private int x;
-    private int y;
-    private final ImageView drillerView;
-    private final Image flyingOnImage, flyingOffImage, downImage, leftImage, rightImage;
+    // Driller's image and the offsets of the image from the cell
+    private String sprite = SpriteAtlas.DRILL_FLYING_ON;
+    private int xOffset = -15;
+    private int yOffset = 0;
+    private final MineSimulation simulation;
     private final Game game;
 
-    // Drillers state
-    private boolean isFlying = false;
-    private double fuel;
-
     /**
      * Constructor for Driller class.
-     * Initializes the driller's position, images, and fuel level.
+     * The driller's position and fuel level are kept by the simulation.
+     * The driller is drawn by the game's renderer.
      */
-    public Driller(int startX, int startY, int blockSize, Game game) {
-        this.x = startX;
-        this.y = startY;
+    public Driller(MineSimulation simulation, Game game) {
+        this.simulation = simulation;
         this.game = game;
-        fuel = FUEL_LEVEL;
-        this.flyingOnImage = new Image("assets/drill/drill_51.png");
-        this.flyingOffImage = new Image("assets/drill/drill_49.png");
-        this.downImage = new Image("assets/drill/drill_41.png");
-        this.leftImage = new Image("assets/drill/drill_01.png");
-        this.rightImage = new Image("assets/drill/drill_58.png");
-        this.drillerView = new ImageView(flyingOnImage);
-        drillerView.setTranslateX(x * blockSize - 15);
-        drillerView.setTranslateY(y * blockSize);
     }
 
     /**
      * Starts the gravity.
      * The driller will fall down if there is no block below it and flying mode is off.
+     * Gravity runs on the game loop once every GRAVITY_DELAY.
      */
     public void startGravity() {
-        // Create a new timer
-        new AnimationTimer() {
-            private long lastUpdate = 0;
-            //This method is called in every frame while the AnimationTimer is active.
-            @Override
-            public void handle(long now) {
-                // If the game is over stop the timer
-                if (game.gameOver) {
-                    this.stop();
-                    return;
-                }
-                // If the driller is flying or the gravity delay has not passed(to obtain a smooth fall), gravity off.
-                if (isFlying || now - lastUpdate < GRAVITY_DELAY) return;
-                // If there is no block below the driller, fall down
-                if (y < Main.GRID_HEIGHT - 1 && (game.getGrid()[y + 1][x] instanceof SkyBlock || game.getGrid()[y + 1][x] instanceof EmptyBlock)) {
-                    y++;
-                    setImage(flyingOffImage, -15, 0);
-                }
-                lastUpdate = now; // Update the last update time
-            }
-        }.start(); // Start the timer
+        game.getLoop().register(tick -> simulation.applyGravity(), MineSimulation.GRAVITY_DELAY);
     }
 
     /**
      * Starts the fuel timer.
-     * It will decrease fuel over time.
+     * It will decrease fuel over time, once every FUEL_DELAY on the game loop.
      */
     public void startFuelTimer() {
-        // Create a new animation timer
-        new AnimationTimer() {
-            private long lastUpdate = 0;
-
-            //This method is called in every frame
-            @Override
-            public void handle(long now) {
-                // If the game is over stop the timer
-                if (game.gameOver) {
-                    this.stop();
-                    return;
-                }
-                if (now - lastUpdate >= FUEL_DELAY) {
-                    game.updateFuel(fuel - (isFlying ? FUEL_CONSUMPTION_FLYING: FUEL_CONSUMPTION));
-                    lastUpdate = now;
-                }
-            }
-        }.start();
+        game.getLoop().register(tick -> simulation.drainFuel(), MineSimulation.FUEL_DELAY);
     }
 
     /**
      * Returns the current fuel level.
      */
     public double getFuel() {
-        return fuel;
+        return simulation.getFuel();
     }
 
     /**
      * Returns the current flying state.
      */
     public boolean getIsFlying() {
-        return isFlying;
+        return simulation.isFlying();
+    }
+
+    /**
+     * Returns the x coordinate of the driller's cell.
+     */
+    public int getX() {
+        return simulation.getX();
+    }
+
+    /**
+     * Returns the y coordinate of the driller's cell.
+     */
+    public int getY() {
+        return simulation.getY();
+    }
+
+    /**
+     * Returns the sprite the driller is currently drawn with.
+     */
+    public String getSprite() {
+        return sprite;
+    }
+
+    /**
+     * Returns the x position of the driller's image in pixels.
+     */
+    public double getViewX() {
+        return simulation.getX() * Main.BLOCK_SIZE + xOffset;
     }
 
     /**
-     * Returns the driller's image view.
+     * Returns the y position of the driller's image in pixels.
      */
-    public ImageView getDrillerView() {
-        return drillerView;
+    public double getViewY() {
+        return simulation.getY() * Main.BLOCK_SIZE + yOffset;
     }
 
     /**
-     * Sets the fuel level.
+     * Shows the driller in the pose chosen by the simulation.
+     * @param pose The pose to draw the driller in.
      */
-    public void setFuel(double fuel) {
-        this.fuel = fuel;
+    public void showPose(MineSimulation.Pose pose) {
+        switch (pose) {
+            case FLYING_OFF:
+                setImage(SpriteAtlas.DRILL_FLYING_OFF, -15, 0);
+                break;
+            case DOWN:
+                setImage(SpriteAtlas.DRILL_DOWN, -15, 0);
+                break;
+            case LEFT:
+                setImage(SpriteAtlas.DRILL_LEFT, -10, -10);
+                break;
+            case RIGHT:
+                setImage(SpriteAtlas.DRILL_RIGHT, 10, -5);
+                break;
+            default:
+                setImage(SpriteAtlas.DRILL_FLYING_ON, -15, 0);
+                break;
+        }
     }
 
     /**
      * Sets the image of the driller. Offset values are for adjust the image position.
      */
-    public void setImage(Image image, int xOffset, int yOffset) {
-        drillerView.setTranslateX(x * Main.BLOCK_SIZE + xOffset);
-        drillerView.setTranslateY(y * Main.BLOCK_SIZE + yOffset);
-        drillerView.setImage(image);
+    public void setImage(String sprite, int xOffset, int yOffset) {
+        this.sprite = sprite;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        game.getRenderer().drawDriller(this);
     }
 
     /**
      * Moves the driller up.
      */
     public void moveUp() {
-        if(game.gameOver) return; // If game is over game will not run at the background
-        game.updateFlying(isFlying = true); // Update flying status
-        if (y > 0) { // If the driller is not at the top of the grid
-            Block blockType = game.getGrid()[y - 1][x]; // Get the block above the driller
-            // If the block above the driller is sky or empty, move up
-            if (blockType instanceof SkyBlock || blockType instanceof EmptyBlock) {
-                y--;
-                setImage(flyingOnImage, -15, 0);
-            } else { // If the block above the driller is not sky or empty, prevent digging
-                setImage(flyingOnImage, -15, 0);
-            }
-        }
+        simulation.moveUp();
     }
 
     /**
      * Moves the driller down.
      */
     public void moveDown() {
-        if(game.gameOver) return; // If game is over game will not run at the background
-        game.updateFlying(isFlying = false); // Update flying status
-
-        if (y < Main.GRID_HEIGHT - 1) { // If the driller is not at the bottom of the grid
-            Block blockType = game.getGrid()[y + 1][x]; // Get the block below the driller
-            if (blockType instanceof BoulderBlock) { // If the block below the driller is boulder, prevent digging
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                setImage(downImage, -15, 0);
-            }
-            else if (blockType instanceof LavaBlock) { // If the block below the driller is lava, call update method
-                setImage(downImage, -15, 0);
-                game.update(x, y, new LavaBlock());
-            }
-            else if (!(blockType instanceof SkyBlock) && !(blockType instanceof EmptyBlock)) { // Dig
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                game.update(x, y + 1, blockType);
-                y++;
-                setImage(downImage, -15, 0);
-            }
-        }
+        simulation.moveDown();
     }
 
     /**
      * Moves the driller left.
      */
     public void moveLeft() {
-        if(game.gameOver) return; // If game is over game will not run at the background
-        game.updateFlying(isFlying = false);
-
-        if (x > 0) { // If the driller is not at the left edge of the grid
-            Block blockType = game.getGrid()[y][x - 1]; // Get the block left of the driller
-
-            if (blockType instanceof BoulderBlock) { // If the block left of the driller is boulder, prevent digging
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                setImage(leftImage, -10, -10);
-            }
-            else if (blockType instanceof LavaBlock) { // If the block left of the driller is lava, call update method
-                setImage(leftImage, -10, -10);
-                game.update(x, y, new LavaBlock());
-            }
-            else if (game.getGrid()[y][x]instanceof EmptyBlock && game.getGrid()[y+1][x] instanceof EmptyBlock && !(blockType instanceof EmptyBlock)) { // Prevent drilling when flying
-                setImage(flyingOnImage, -15, 0);
-            }
-            else if (blockType instanceof SkyBlock || blockType instanceof EmptyBlock) { // Don't dig it is in the air
-
-                if (!(game.getGrid()[y+1][x-1] instanceof SkyBlock) && !(game.getGrid()[y+1][x-1] instanceof EmptyBlock)) { // It means it lands on a block if it is not sky or empty
-                    x--;
-                    setImage(leftImage, -10, -10);
-                } else { // It means it is flying
-                    x--;
-                    setImage(flyingOnImage, -15, 0);
-                }
-            }
-            else { // Dig
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                if(game.gameOver) return;
-                game.update(x - 1, y, blockType);
-                x--;
-                setImage(leftImage, -10, -10);
-            }
-        }
+        simulation.moveLeft();
     }
 
     /**
      * Moves the driller right.
      */
     public void moveRight() {
-        if(game.gameOver) return;
-        game.updateFlying(isFlying = false);
-
-        if (x < Main.GRID_WIDTH - 1) { // If the driller is not at the right edge of the grid
-            Block blockType = game.getGrid()[y][x + 1]; // Get the block right of the driller
-            if (blockType instanceof BoulderBlock) { // If the block right of the driller is boulder, prevent digging
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                setImage(rightImage, 10, -5);
-            }
-            else if (blockType instanceof LavaBlock) { // If the block right of the driller is lava, call update method
-                setImage(rightImage, 10, -5);
-                game.update(x, y, new LavaBlock());
-            }
-            else if (game.getGrid()[y][x] instanceof EmptyBlock && game.getGrid()[y+1][x] instanceof EmptyBlock && !(blockType instanceof EmptyBlock)) { // Prevent drilling when flying
-                setImage(flyingOnImage, -15, 0);
-            }
-            else if (blockType instanceof SkyBlock || blockType instanceof EmptyBlock) { // Don't dig it is in the air
-                if (!(game.getGrid()[y+1][x+1] instanceof SkyBlock) && !(game.getGrid()[y+1][x+1] instanceof EmptyBlock)) { // It means it lands on a block if it is not sky or empty
-                    x++;
-                    setImage(rightImage, 10, -5);
-                } else { // It means it is flying
-                    x++;
-                    setImage(flyingOnImage, -15, 0);
-                }
-            } else { // Dig
-                game.updateFuel(fuel - FUEL_CONSUMPTION_DIGGING);
-                if(game.gameOver) return;
-                game.update(x + 1, y, blockType);
-                x++;
-                setImage(rightImage, 10, -5);
-            }
-        }
+        simulation.moveRight();
     }
 }
@@ -1,36 +1,258 @@
-import javafx.scene.Node;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.text.Text;
-import java.util.Iterator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
- * The Game class represents the main game logic.
+ * The Game class puts the game on the screen.
+ * The rules are run by a MineSimulation, this class listens to it and updates the grid, the driller and the texts.
  */
-public class Game {
+public class Game implements SimulationListener {
+    private static final int COMMAND_CAPACITY = 64; // Moves that can wait for the game loop, more are dropped
     public final Pane gameScene;
+    private final MineSimulation simulation;
     private final Driller driller;
-    private final Block[][] grid;
-    private int money, haul;
-    private Text moneyText, haulText, fuelText, flyingText; // Text variables to display the attributes
-    public boolean gameOver = false; // Game over flag
-    private boolean isRedGameOver; // Flag to obtain different behavior for red and green game over screens
+    private final MineGrid grid;
+    private final GridRenderer renderer; // Draws the grid with nodes or on a canvas, see Main.RENDER_MODE
+    private final GameLoop loop; // Runs gravity, fuel drain and every other timed system
+    private final InputRecorder recorder; // Records the player's moves, null unless Main.RECORD_FILE is set
+    private final AutosaveJournal journal; // Keeps the mine on disk, null unless Main.AUTOSAVE_DIR is set
+    private OreIndex oreIndex; // Where the ores are, built the first time it is used
+    private Autopilot autopilot; // Created the first time the autopilot is turned on
+    private boolean autopilotOn = false;
+    private final Hud hud; // Money, haul, fuel and flying texts, updated once per frame
+    private final Metrics metrics; // Frame and tick times and other measurements, shown with M
+    private final CommandQueue commands = new CommandQueue(COMMAND_CAPACITY); // Moves waiting for the next tick
 
     /**
      * Constructor for the Game class.
-     * Initializes the game scene, grid, driller, and text displays.
+     * Initializes the game scene, grid, simulation, driller, and text displays.
+     * A mine left in Main.AUTOSAVE_DIR is recovered first, otherwise the grid and simulation are resumed from
+     * Main.SNAPSHOT_FILE when Main.RESUME is set and the file exists.
      *
      * @param gameScene The Pane object representing the game scene.
      */
     public Game(Pane gameScene) {
         this.gameScene = gameScene;
-        grid = new GridInitializer(Main.GRID_HEIGHT, Main.GRID_WIDTH).initializeGrid();
-        driller = new Driller(1, 1, Main.BLOCK_SIZE, this);
-        new GridDrawer(gameScene, driller, grid);
-        money = 0;
-        haul = 0;
-        initializeTexts();
-        gameScene.getChildren().addAll(moneyText, haulText, fuelText, flyingText);
+        loop = new GameLoop(Main.TICK_RATE, Main.MAX_CATCH_UP_TICKS);
+        MineSimulation resumed = Main.AUTOSAVE_DIR != null ? recover(Paths.get(Main.AUTOSAVE_DIR)) : null;
+        if (resumed == null && Main.RESUME) {
+            resumed = resume(Paths.get(Main.SNAPSHOT_FILE));
+        }
+        if (resumed != null) {
+            simulation = resumed;
+            grid = simulation.getGrid();
+            recorder = null; // A recording replays from the seed, it cannot start from a snapshot
+        } else {
+            grid = createGrid(Main.WORLD_WIDTH, Main.WORLD_HEIGHT, Main.WORLD_SEED);
+            recorder = Main.RECORD_FILE == null ? null : new InputRecorder(Main.WORLD_SEED, Main.WORLD_WIDTH, Main.WORLD_HEIGHT, Main.TICK_RATE);
+            simulation = new MineSimulation(grid, 1, 1);
+        }
+        simulation.setLavaMode(Main.LAVA_MODE);
+        driller = new Driller(simulation, this);
+        renderer = Main.RENDER_MODE.equals("canvas") ? new CanvasGridDrawer(gameScene, driller, grid) : new GridDrawer(gameScene, driller, grid);
+        renderer.drawGrid();
+        hud = new Hud(simulation.getMoney(), simulation.getHaul(), simulation.getFuel(), simulation.isFlying());
+        gameScene.getChildren().addAll(hud.getNodes());
+        loop.registerFrame(tick -> hud.render());
+        metrics = new Metrics(gameScene, simulation);
+        gameScene.getChildren().add(metrics.getOverlay());
+        loop.setMetrics(metrics);
+        loop.registerFrame(tick -> metrics.sample(System.nanoTime()));
+        simulation.addListener(this);
+        journal = Main.AUTOSAVE_DIR != null ? startAutosave(Paths.get(Main.AUTOSAVE_DIR)) : null;
+    }
+
+    /**
+     * Creates the mine for a world of the given size.
+     * A world that fits on the screen is a single BlockGrid, a larger one is generated chunk by chunk as the driller gets close.
+     * @param width The width of the world in blocks.
+     * @param height The height of the world in blocks.
+     * @param seed The seed the world is generated from.
+     * @return The grid of the world.
+     */
+    public static MineGrid createGrid(int width, int height, long seed) {
+        if (width == Main.GRID_WIDTH && height == Main.GRID_HEIGHT) { // The whole mine fits on the screen
+            return new GridInitializer(height, width).initializeGrid(seed);
+        }
+        return new ChunkedWorld(width, height, seed, ChunkedWorld.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Resumes a mine from a snapshot.
+     * @param path The snapshot file.
+     * @return The resumed simulation, or null if there is no snapshot to resume.
+     */
+    private static MineSimulation resume(Path path) {
+        if (!Files.exists(path)) return null;
+        try {
+            return WorldSnapshot.open(path).restore();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not resume the snapshot, starting a new mine: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Recovers a mine from an autosave left by a session that did not end.
+     * @param directory The autosave directory.
+     * @return The recovered simulation, or null if there is nothing to recover.
+     */
+    private static MineSimulation recover(Path directory) {
+        try {
+            return AutosaveJournal.recover(directory);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not recover the autosave: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts journaling the mine and flushes the journal once every AutosaveJournal.FLUSH_PERIOD on the game loop.
+     * @param directory The autosave directory.
+     * @return The journal, or null if it could not be started.
+     */
+    private AutosaveJournal startAutosave(Path directory) {
+        try {
+            AutosaveJournal autosave = new AutosaveJournal(directory, simulation);
+            simulation.addListener(autosave);
+            loop.register(autosave::flush, AutosaveJournal.FLUSH_PERIOD);
+            return autosave;
+        } catch (IOException e) {
+            System.err.println("Could not start the autosave: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes what is left of the journal so the mine can be recovered on the next start.
+     */
+    public void closeAutosave() {
+        if (journal != null) {
+            journal.close(loop.getTick(), false);
+        }
+    }
+
+    /**
+     * Saves the mine to Main.SNAPSHOT_FILE so it can be resumed later.
+     */
+    public void saveSnapshot() {
+        if (simulation.isGameOver()) return; // A finished mine is not worth resuming
+        try {
+            WorldSnapshot.save(Paths.get(Main.SNAPSHOT_FILE), simulation);
+        } catch (IOException e) {
+            System.err.println("Could not save the snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows or hides the metrics overlay.
+     */
+    public void toggleMetrics() {
+        metrics.toggleOverlay();
+    }
+
+    /**
+     * Writes the metrics of the last hour to Main.METRICS_FILE.
+     */
+    public void exportMetrics() {
+        try {
+            metrics.writeCsv(Paths.get(Main.METRICS_FILE));
+        } catch (IOException e) {
+            System.err.println("Could not export the metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the driller like the arrow keys do, the move is recorded if the session is recorded.
+     * @param direction The direction to move in.
+     */
+    public void move(MineSimulation.Direction direction) {
+        recordInput(direction);
+        switch (direction) {
+            case UP:
+                driller.moveUp();
+                break;
+            case DOWN:
+                driller.moveDown();
+                break;
+            case LEFT:
+                driller.moveLeft();
+                break;
+            default:
+                driller.moveRight();
+                break;
+        }
+    }
+
+    /**
+     * Starts playing the moves of the command queue, at most Main.MOVES_PER_TICK of them every tick.
+     * Main calls it after starting gravity and the fuel drain, so a move comes after them in its tick,
+     * which is the order InputReplay plays a recording in.
+     */
+    public void startInput() {
+        loop.register(tick -> {
+            for (int i = 0; i < Main.MOVES_PER_TICK; i++) {
+                MineSimulation.Direction direction = commands.poll();
+                if (direction == null) return;
+                move(direction);
+            }
+        }, loop.getTickNanos());
+    }
+
+    /**
+     * Turns the autopilot on or off.
+     * While it is on it makes one move every GRAVITY_DELAY, so every planned move costs one tick of fuel drain.
+     * It is registered on the game loop the first time, after gravity and fuel drain, so its moves come after them in a tick.
+     */
+    public void toggleAutopilot() {
+        if (autopilot == null) {
+            autopilot = new Autopilot(simulation);
+            autopilot.setOreIndex(getOreIndex());
+            simulation.addListener(autopilot);
+            loop.register(tick -> {
+                if (!autopilotOn) return;
+                MineSimulation.Direction direction = autopilot.next();
+                if (direction != null) {
+                    move(direction);
+                }
+            }, MineSimulation.GRAVITY_DELAY);
+        }
+        autopilotOn = !autopilotOn;
+    }
+
+    /**
+     * Adds a move of the player to the input recording, if the session is recorded.
+     * @param direction The direction of the move.
+     */
+    public void recordInput(MineSimulation.Direction direction) {
+        if (recorder != null && !simulation.isGameOver()) {
+            recorder.record(loop.getTick(), direction);
+        }
+    }
+
+    /**
+     * Ends the input recording and writes it to Main.RECORD_FILE.
+     * Only the first call writes the file, so it can be called both on game over and when the window closes.
+     */
+    public void saveRecording() {
+        if (recorder == null || recorder.isFinished()) return;
+        recorder.finish(loop.getTick());
+        try {
+            recorder.write(Paths.get(Main.RECORD_FILE));
+        } catch (IOException e) {
+            System.err.println("Could not save the input recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Getter for the simulation running the rules of the game.
+     * @return The MineSimulation of the game.
+     */
+    public MineSimulation getSimulation() {
+        return simulation;
     }
 
     /**
@@ -42,115 +264,114 @@ public class Game {
     }
 
     /**
-     * Getter for the grid.
-     * @return The 2D array representing the grid.
+     * Getter for the command queue, the one way keys, replays and remote players feed moves into the game.
+     * @return The CommandQueue drained by the game loop.
      */
-    public Block[][] getGrid() {
-        return grid;
+    public CommandQueue getCommands() {
+        return commands;
     }
 
     /**
-     * Initializes the text displays for money, haul, fuel, and flying status.
+     * Getter for the game loop.
+     * @return The GameLoop that timed systems register on.
      */
-    private void initializeTexts() {
-        moneyText = createText("Money: 0", 10, 60);
-        haulText = createText("Haul: 0", 10, 40);
-        fuelText = createText("Fuel: " + driller.getFuel(), 10, 20);
-        flyingText = createText("Flying: " + (driller.getIsFlying() ? "ON" : "OFF"), 10, 80);
+    public GameLoop getLoop() {
+        return loop;
     }
 
     /**
-     * Creates a Text object with the given parameters.
-     *
-     * @param text The text to display.
-     * @param x The x coordinate for the text.
-     * @param y The y coordinate for the text.
-     * @return The created Text object.
+     * Getter for the renderer drawing the grid.
+     * @return The GridRenderer of the game.
      */
-    private Text createText(String text, int x, int y) {
-        Text textItem = new Text(text);
-        textItem.setX(x);
-        textItem.setY(y);
-        return textItem;
+    public GridRenderer getRenderer() {
+        return renderer;
     }
 
     /**
-     * Updates the block at the given coordinates and updates the money and haul if necessary.
-     *
-     * @param x The x coordinate of the block.
-     * @param y The y coordinate of the block.
-     * @param block The new block to place at the coordinates.
+     * Getter for the ore index, indexes the grid the first time it is called.
+     * Until then no game pays for scanning the grid or updating the index.
+     * @return The OreIndex of the grid, or null if the world is chunked and too large to index.
      */
-    public void update(int x, int y, Block block) {
-
-        // Update the block in the grid and remove old one from the scene
-        grid[y][x] = new EmptyBlock();
-        removeOldBlockFromScene(x, y);
-
-        if (block instanceof LavaBlock) { // If the block is lava the game is over
-            displayGameOverScreen(isRedGameOver = true);
-        } else { // Otherwise update the money and haul
-            updateMoneyAndHaul(block);
+    public OreIndex getOreIndex() {
+        if (oreIndex == null && grid instanceof BlockGrid) {
+            oreIndex = new OreIndex(grid);
+            simulation.addListener(oreIndex);
         }
-        // Update the money and text fields
-        moneyText.setText("Money: " + money);
-        haulText.setText("Haul: " + haul);
+        return oreIndex;
     }
 
     /**
-     * Removes the old block from the scene.
+     * Getter for the grid.
+     * @return The MineGrid representing the mine.
+     */
+    public MineGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Redraws a cell after the simulation changed its block.
      *
      * @param x The x coordinate of the block.
      * @param y The y coordinate of the block.
+     * @param oldType The type code of the block that was there.
+     * @param newType The type code of the block that is there now.
      */
-    private void removeOldBlockFromScene(int x, int y) {
-        // Node is a collection that we hold the scenes children and we can iterate over it
-        Iterator<Node> iterator = gameScene.getChildren().iterator();
-        // Iterate over the children of the scene
-        while (iterator.hasNext()) {
-            Node node = iterator.next();
-            // If the node is an ImageView, and it is at the same position as the block
-            if (node instanceof ImageView) {
-                ImageView imageView = (ImageView) node;
-                if (imageView.getTranslateX() == x * Main.BLOCK_SIZE && imageView.getTranslateY() == y * Main.BLOCK_SIZE) { // If the image view is at the same position as the block
-                    iterator.remove(); // Remove the image view from the scene
-                }
-            }
-        }
+    @Override
+    public void cellChanged(int x, int y, byte oldType, byte newType) {
+        renderer.redrawCell(x, y);
     }
 
+    /**
+     * Draws the driller in its new position and pose.
+     *
+     * @param x The x coordinate of the driller's cell.
+     * @param y The y coordinate of the driller's cell.
+     * @param pose The pose to draw the driller in.
+     */
+    @Override
+    public void drillerMoved(int x, int y, MineSimulation.Pose pose) {
+        driller.showPose(pose);
+    }
 
     /**
-     * Updates the money and haul based on the block.
-     * @param block The block to base the update on.
+     * Updates the money and haul texts.
+     * @param money The new amount of money.
+     * @param haul The new haul.
      */
-    private void updateMoneyAndHaul(Block block) {
-        // If the block is a valuable block update the money and haul according to their values
-        if (block instanceof DiamondBlock || block instanceof EmeraldBlock || block instanceof AmazoniteBlock || block instanceof PlatinumBlock) {
-            money += block.getValue();
-            haul += block.getHaul();
-        }
+    @Override
+    public void moneyChanged(int money, int haul) {
+        hud.setMoney(money, haul);
     }
 
     /**
-     * Updates the fuel text and checks if game over due to fuel.
+     * Updates the fuel text.
      * @param fuel The new fuel value.
      */
-    public void updateFuel(double fuel) {
-        driller.setFuel(fuel);
-        fuelText.setText("Fuel: " + String.format("%.2f", fuel));
-
-        if (fuel <= 0) {
-            displayGameOverScreen(isRedGameOver = false); // Display the game over screen
-        }
+    @Override
+    public void fuelChanged(double fuel) {
+        hud.setFuel(fuel);
     }
 
     /**
      * Updates the flying status text.
      * @param isFlying The new flying status.
      */
-    public void updateFlying(boolean isFlying) {
-        flyingText.setText("Flying: " + (isFlying ? "ON" : "OFF"));
+    @Override
+    public void flyingChanged(boolean isFlying) {
+        hud.setFlying(isFlying);
+    }
+
+    /**
+     * Displays the game over screen for the reason the game ended.
+     * @param cause The reason the game ended.
+     */
+    @Override
+    public void gameOver(MineSimulation.Cause cause) {
+        saveRecording();
+        if (journal != null) {
+            journal.close(loop.getTick(), true); // A mine that is over is not recovered
+        }
+        displayGameOverScreen(cause != MineSimulation.Cause.FUEL); // Only running out of fuel keeps the score
     }
 
     /**
@@ -158,15 +379,16 @@ public class Game {
      * @param isRedGameOver True if the game over screen should be red, false if it should be green.
      */
     public void displayGameOverScreen(boolean isRedGameOver) {
-        gameOver = true; // Set the game over flag to true
+        loop.stop(); // Stop every timed system
+        renderer.release(); // Keeps the tile nodes for the next game
         gameScene.getChildren().clear(); // Clear the scene
         String gameOverMessage = "GAME OVER";
-        if(isRedGameOver) { // If the game over cause is lava
+        if(isRedGameOver) { // If the game over cause is lava or a falling block
             gameScene.setStyle("-fx-background-color: #881010"); // set the background color to red
 
         } else { // If the game over cause is fuel
             gameScene.setStyle("-fx-background-color: green"); // set the background color to green
-            gameOverMessage += "\nScore: " + money;
+            gameOverMessage += "\nScore: " + simulation.getMoney();
         }
         // Create a text object with the game over message
         Text gameOverText = new Text(gameOverMessage);
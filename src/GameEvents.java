@@ -0,0 +1,206 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * GameEvents holds the Java Flight Recorder events of the game.
+ * Every event is disabled by default, a disabled event is never committed and the JIT removes its allocation,
+ * so they cost close to nothing until a recording turns them on. hu-load.jfc enables all of them, for example
+ * with jcmd (pid) JFR.start settings=default,hu-load.jfc, and the events then show next to GC and safepoints in JMC.
+ * Stack traces are off, the events come from a few known places and walking the stack would cost more than the events.
+ */
+public final class GameEvents {
+    private GameEvents() {
+    }
+
+    /**
+     * One move of the driller, made by a player, a replay or a bot, or a fall by gravity.
+     */
+    @Name("hu.load.DrillerMove")
+    @Label("Driller Move")
+    @Category({"HU-Load", "Simulation"})
+    @Description("A move of the driller and what it did")
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class Move extends Event {
+        @Label("Direction")
+        public String direction;
+
+        @Label("Outcome")
+        @Description("MOVED, DUG, BLOCKED, LAVA, IGNORED, or FALL for a fall by gravity")
+        public String outcome;
+
+        @Label("Fuel Delta")
+        public double fuelDelta;
+
+        @Label("X")
+        public int x;
+
+        @Label("Y")
+        public int y;
+    }
+
+    /**
+     * One block dug by the driller and what it paid.
+     */
+    @Name("hu.load.Dig")
+    @Label("Dig")
+    @Category({"HU-Load", "Simulation"})
+    @Description("A block dug by the driller, with the listeners it updated")
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class Dig extends Event {
+        @Label("Block")
+        public String block;
+
+        @Label("Value")
+        public int value;
+
+        @Label("Haul")
+        public int haul;
+
+        @Label("X")
+        public int x;
+
+        @Label("Y")
+        public int y;
+    }
+
+    /**
+     * One step of the lava flow.
+     */
+    @Name("hu.load.LavaStep")
+    @Label("Lava Step")
+    @Category({"HU-Load", "Simulation"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class LavaStep extends Event {
+        @Label("Mode")
+        public String mode;
+
+        @Label("Cells Checked")
+        public int checked;
+
+        @Label("Cells Flooded")
+        public int flooded;
+    }
+
+    /**
+     * One tick of a MineServer, committed after its changes were handed to the clients.
+     */
+    @Name("hu.load.ServerTick")
+    @Label("Server Tick")
+    @Category({"HU-Load", "Server"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class ServerTick extends Event {
+        @Label("Tick")
+        public long tick;
+
+        @Label("Drillers")
+        public int drillers;
+
+        @Label("Moves Played")
+        public int moves;
+
+        @Label("Message Size")
+        @DataAmount
+        public int messageSize;
+
+        @Label("Moves Waiting")
+        public int commandBacklog;
+
+        @Label("Largest Outbox")
+        public int outboxBacklog;
+    }
+
+    /**
+     * The generation of a whole grid by GridInitializer.
+     */
+    @Name("hu.load.WorldGeneration")
+    @Label("World Generation")
+    @Category({"HU-Load", "World"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class WorldGeneration extends Event {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Seed")
+        public long seed;
+
+        @Label("Bands")
+        @Description("Row bands generated, in parallel when there are enough of them")
+        public int bands;
+    }
+
+    /**
+     * One chunk of a ChunkedWorld read from a snapshot or generated.
+     */
+    @Name("hu.load.ChunkLoad")
+    @Label("Chunk Load")
+    @Category({"HU-Load", "World"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class ChunkLoad extends Event {
+        @Label("Chunk X")
+        public int chunkX;
+
+        @Label("Chunk Y")
+        public int chunkY;
+
+        @Label("From Snapshot")
+        public boolean fromSnapshot;
+    }
+
+    /**
+     * A pass of a renderer that draws more than a single cell.
+     */
+    @Name("hu.load.RenderPass")
+    @Label("Render Pass")
+    @Category({"HU-Load", "Rendering"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class RenderPass extends Event {
+        @Label("Renderer")
+        public String renderer;
+
+        @Label("Pass")
+        @Description("drawGrid for a full draw, scroll when the camera followed the driller")
+        public String pass;
+    }
+
+    /**
+     * One frame callback of the game loop with the ticks it ran.
+     */
+    @Name("hu.load.Frame")
+    @Label("Frame")
+    @Category({"HU-Load", "Game Loop"})
+    @Enabled(false)
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class Frame extends Event {
+        @Label("Ticks")
+        public int ticks;
+
+        @Label("Tick")
+        @Description("Number of the last tick that ran")
+        public long tick;
+    }
+}
@@ -0,0 +1,157 @@
+import javafx.animation.AnimationTimer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameLoop is the single scheduler that drives every timed system of the game.
+ * It runs one AnimationTimer and advances the simulation in fixed ticks with an accumulator,
+ * so each handler runs at its own period no matter how long a frame takes.
+ * When frames are dropped it runs at most a limited number of ticks to catch up and drops the rest of the time,
+ * so a slow frame never makes the next one slower.
+ */
+public class GameLoop {
+    public static final int DEFAULT_TICK_RATE = 60; // Ticks per second
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5; // Ticks run at most in a single frame
+
+    private final long tickNanos;
+    private final int maxCatchUpTicks;
+    private final List<TickHandler> handlers = new ArrayList<>();
+    private final List<Long> periods = new ArrayList<>(); // Period of each handler in ticks
+    private final List<TickHandler> frameHandlers = new ArrayList<>(); // Run once per frame after the ticks
+    private AnimationTimer timer; // Created on start, so a loop that is only stepped does not need JavaFX
+    private Metrics metrics; // Times every frame and tick when set
+
+    private long tick; // Number of the last tick that ran
+    private long accumulator; // Frame time that is not simulated yet
+    private long lastFrame = -1;
+
+    /**
+     * Constructor for GameLoop.
+     * @param tickRate The number of simulation ticks per second.
+     * @param maxCatchUpTicks The number of ticks run at most in a single frame.
+     */
+    public GameLoop(int tickRate, int maxCatchUpTicks) {
+        this.tickNanos = 1_000_000_000L / tickRate;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Registers a handler that runs once every period.
+     * Handlers run in the order they were registered, which keeps every tick deterministic.
+     * @param handler The handler to run.
+     * @param periodNanos The period of the handler in nanoseconds, it is rounded to whole ticks.
+     */
+    public void register(TickHandler handler, long periodNanos) {
+        handlers.add(handler);
+        periods.add(Math.max(1, Math.round((double) periodNanos / tickNanos)));
+    }
+
+    /**
+     * Registers a handler that runs once at the end of every frame, after the ticks of the frame.
+     * Used for work that only has to happen once per pulse however many ticks ran, like updating texts.
+     * @param handler The handler to run, it is given the number of the last tick that ran.
+     */
+    public void registerFrame(TickHandler handler) {
+        frameHandlers.add(handler);
+    }
+
+    /**
+     * Makes the loop report how long each frame and each tick takes.
+     * @param metrics The metrics to report to, null to stop timing.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts calling the loop on every frame.
+     */
+    public void start() {
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                //This method is called in every frame while the AnimationTimer is active.
+                @Override
+                public void handle(long now) {
+                    frame(now);
+                }
+            };
+        }
+        lastFrame = -1;
+        timer.start();
+    }
+
+    /**
+     * Stops the loop, no handler runs after this.
+     */
+    public void stop() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Adds the time since the previous frame to the accumulator and runs the ticks that fit in it.
+     * @param now The time of the frame in nanoseconds.
+     */
+    public void frame(long now) {
+        long frameStart = metrics != null ? System.nanoTime() : 0; // now is the pulse time, not when the callback started
+        GameEvents.Frame event = new GameEvents.Frame();
+        event.begin();
+        if (lastFrame < 0) { // First frame, there is no elapsed time yet
+            lastFrame = now;
+            return;
+        }
+        accumulator += now - lastFrame;
+        lastFrame = now;
+        int ticks = 0;
+        while (accumulator >= tickNanos && ticks < maxCatchUpTicks) {
+            step();
+            accumulator -= tickNanos;
+            ticks++;
+        }
+        if (accumulator >= tickNanos) { // Over the catch-up limit, drop the time instead of falling further behind
+            accumulator %= tickNanos;
+        }
+        for (int i = 0; i < frameHandlers.size(); i++) {
+            frameHandlers.get(i).tick(tick);
+        }
+        if (event.shouldCommit()) {
+            event.ticks = ticks;
+            event.tick = tick;
+            event.commit();
+        }
+        if (metrics != null) {
+            metrics.recordFrame(System.nanoTime() - frameStart);
+        }
+    }
+
+    /**
+     * Runs a single tick, calling every handler whose period is due.
+     */
+    public void step() {
+        long tickStart = metrics != null ? System.nanoTime() : 0;
+        tick++;
+        for (int i = 0; i < handlers.size(); i++) {
+            if (tick % periods.get(i) == 0) {
+                handlers.get(i).tick(tick);
+            }
+        }
+        if (metrics != null) {
+            metrics.recordTick(System.nanoTime() - tickStart);
+        }
+    }
+
+    /**
+     * Returns the number of the last tick that ran.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the length of a tick in nanoseconds.
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+}
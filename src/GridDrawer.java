@@ -1,38 +1,68 @@
+import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * GridDrawer class is responsible for drawing the game grid on the scene.
+ * It draws one node per tile, grouped by chunk, and only the chunks under the camera are in the scene.
+ * Tile nodes are never thrown away: a dug cell hides its node, and a chunk that scrolls out of view or belongs to a
+ * game that ended goes to a pool with all its nodes, where the next chunk to come into view takes it and changes their sprites.
  * It contains methods to create image views and draw the grid.
  */
-public class GridDrawer {
+public class GridDrawer implements GridRenderer {
+    private static final int MAX_POOLED_CHUNKS = 8; // More than the camera ever shows at once
+    private static final ArrayDeque<ChunkView> POOL = new ArrayDeque<>(); // Shared by every game, only used on the JavaFX thread
+
     private final Pane gameScene;
     private final Driller driller;
-    private final Block[][] grid;
+    private final MineGrid grid;
+    private final SpriteAtlas sprites;
+    private final Camera camera;
+    private final Group worldLayer = new Group(); // Holds the visible chunks and the driller, moved opposite to the camera
+    private final Map<Long, ChunkView> visibleChunks = new HashMap<>();
+    private final ImageView drillerView;
+
+    /**
+     * The nodes of one chunk of the grid and the index of the nodes of each cell.
+     * Nodes are placed relative to the group, which is moved to the chunk, so a pooled view can be used for any chunk.
+     */
+    private static final class ChunkView {
+        private final Group group = new Group();
+        private final TileIndex tiles = new TileIndex(ChunkedWorld.CHUNK_SIZE, ChunkedWorld.CHUNK_SIZE); // Image of each cell
+        private final TileIndex skies = new TileIndex(ChunkedWorld.CHUNK_SIZE, ChunkedWorld.CHUNK_SIZE); // Sky of each cell that was ever sky
+        private int chunkX, chunkY;
+    }
 
     /**
      * Constructor for GridDrawer class.
-     * Initializes the game scene, driller, and grid.
-     * Calls the drawGrid method to draw the initial grid.
+     * Initializes the game scene, driller, grid, and the camera that decides which chunks are drawn.
      */
-    public GridDrawer(Pane gameScene, Driller driller, Block[][] grid) {
+    public GridDrawer(Pane gameScene, Driller driller, MineGrid grid) {
         this.gameScene = gameScene;
         this.driller = driller;
         this.grid = grid;
-        drawGrid();
+        this.sprites = SpriteAtlas.getShared();
+        this.camera = new Camera(Main.GRID_WIDTH, Main.GRID_HEIGHT);
+        this.drillerView = new ImageView();
     }
 
     /**
      * Creates an ImageView object with the given image file and coordinates.
+     * The image comes from the shared sprite atlas, so the file is not decoded again.
      * @param imageFile The image file to be displayed
-     * @param x The x coordinate of the image
-     * @param y The y coordinate of the image
+     * @param x The x coordinate of the image in its chunk
+     * @param y The y coordinate of the image in its chunk
      * @return The ImageView object with the given image and coordinates
      */
     private ImageView createImageView(String imageFile, int x, int y) {
-        ImageView imageView = new ImageView(imageFile);
+        ImageView imageView = sprites.createView(imageFile);
         imageView.setTranslateX(x * Main.BLOCK_SIZE);
         imageView.setTranslateY(y * Main.BLOCK_SIZE);
         return imageView;
@@ -40,30 +70,188 @@ public class GridDrawer {
 
     /**
      * Draws the grid on the game scene.
-     * Loops through the grid and draws the blocks on the scene.
+     * Moves the camera to the driller and draws the chunks it can see.
      * Adds the driller view to the scene at the end.
      */
+    @Override
     public void drawGrid() {
+        GameEvents.RenderPass event = new GameEvents.RenderPass();
+        event.begin();
         gameScene.getChildren().clear(); // Clear the scene before drawing
+        release();
+        camera.follow(driller, grid);
+        moveWorldLayer();
+        worldLayer.getChildren().add(drillerView); // Add the driller, chunks are always inserted below it
+        updateVisibleChunks();
+        drawDriller(driller);
+        gameScene.getChildren().add(worldLayer);
+        commitPass(event, "drawGrid");
+    }
 
-        for (int y = 0; y < Main.GRID_HEIGHT; y++) {
-            for (int x = 0; x < Main.GRID_WIDTH; x++) {
-                Block block = grid[y][x]; // Get the block at the current position
-                if (block instanceof SkyBlock) { // Draw sky blocks we are treating this case differently because there is no image file for sky blocks
-                    Rectangle skyRectangle = new Rectangle(Main.BLOCK_SIZE, Main.BLOCK_SIZE+3, Color.SKYBLUE);
-                    skyRectangle.setTranslateX(x * Main.BLOCK_SIZE);
-                    skyRectangle.setTranslateY(y * Main.BLOCK_SIZE);
-                    gameScene.getChildren().add(skyRectangle);
-                }
-                else { // Draw other blocks
-                    String imageFile = block.getImageFile();
-                    if (imageFile != null) {
-                        ImageView blockView = createImageView(imageFile, x, y);
-                        gameScene.getChildren().add(blockView);
-                    }
+    /**
+     * Commits a render pass event if it is enabled and long enough.
+     */
+    private static void commitPass(GameEvents.RenderPass event, String pass) {
+        if (event.shouldCommit()) {
+            event.renderer = "nodes";
+            event.pass = pass;
+            event.commit();
+        }
+    }
+
+    /**
+     * Moves the world layer so the camera's top left cell is at the top left of the scene.
+     */
+    private void moveWorldLayer() {
+        worldLayer.setTranslateX(-camera.getX() * Main.BLOCK_SIZE);
+        worldLayer.setTranslateY(-camera.getY() * Main.BLOCK_SIZE);
+    }
+
+    /**
+     * Removes the chunks that left the camera from the scene and draws the chunks that entered it.
+     */
+    private void updateVisibleChunks() {
+        int firstChunkX = camera.getX() >> ChunkedWorld.CHUNK_SHIFT;
+        int firstChunkY = camera.getY() >> ChunkedWorld.CHUNK_SHIFT;
+        int lastChunkX = (Math.min(camera.getX() + camera.getViewWidth(), grid.getWidth()) - 1) >> ChunkedWorld.CHUNK_SHIFT;
+        int lastChunkY = (Math.min(camera.getY() + camera.getViewHeight(), grid.getHeight()) - 1) >> ChunkedWorld.CHUNK_SHIFT;
+
+        Iterator<ChunkView> iterator = visibleChunks.values().iterator();
+        while (iterator.hasNext()) {
+            ChunkView view = iterator.next();
+            if (view.chunkX < firstChunkX || view.chunkX > lastChunkX || view.chunkY < firstChunkY || view.chunkY > lastChunkY) {
+                worldLayer.getChildren().remove(view.group);
+                iterator.remove();
+                recycle(view);
+            }
+        }
+        for (int chunkY = firstChunkY; chunkY <= lastChunkY; chunkY++) {
+            for (int chunkX = firstChunkX; chunkX <= lastChunkX; chunkX++) {
+                long key = ChunkedWorld.chunkKey(chunkX, chunkY);
+                if (!visibleChunks.containsKey(key)) {
+                    ChunkView view = drawChunk(chunkX, chunkY);
+                    visibleChunks.put(key, view);
+                    worldLayer.getChildren().add(0, view.group);
                 }
             }
         }
-        gameScene.getChildren().add(driller.getDrillerView()); // Add the driller
+    }
+
+    /**
+     * Draws the blocks of one chunk, into a view from the pool if there is one.
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkY The y coordinate of the chunk.
+     * @return The view holding the chunk's nodes.
+     */
+    private ChunkView drawChunk(int chunkX, int chunkY) {
+        ChunkView view = POOL.poll();
+        if (view == null) {
+            view = new ChunkView();
+        }
+        view.chunkX = chunkX;
+        view.chunkY = chunkY;
+        view.group.setTranslateX((chunkX << ChunkedWorld.CHUNK_SHIFT) * Main.BLOCK_SIZE);
+        view.group.setTranslateY((chunkY << ChunkedWorld.CHUNK_SHIFT) * Main.BLOCK_SIZE);
+        for (int tileY = 0; tileY < ChunkedWorld.CHUNK_SIZE; tileY++) {
+            for (int tileX = 0; tileX < ChunkedWorld.CHUNK_SIZE; tileX++) {
+                drawTile(view, tileX, tileY);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Makes the nodes of one cell of a chunk view show the cell's block.
+     * An existing node only has its sprite changed or is hidden, a node is created only the first time a cell of the view needs it.
+     * Sky cells show a rectangle, because there is no image file for sky blocks, and dug cells show the background.
+     * @param view The view of the cell's chunk.
+     * @param tileX The x coordinate of the cell in the chunk.
+     * @param tileY The y coordinate of the cell in the chunk.
+     */
+    private void drawTile(ChunkView view, int tileX, int tileY) {
+        int x = (view.chunkX << ChunkedWorld.CHUNK_SHIFT) + tileX;
+        int y = (view.chunkY << ChunkedWorld.CHUNK_SHIFT) + tileY;
+        byte type = x < grid.getWidth() && y < grid.getHeight() ? grid.getType(x, y) : BlockGrid.EMPTY; // Cells past the grid are drawn like dug cells
+        Node sky = view.skies.get(tileX, tileY);
+        if (type == BlockGrid.SKY) {
+            if (sky == null) {
+                sky = new Rectangle(Main.BLOCK_SIZE, Main.BLOCK_SIZE+3, Color.SKYBLUE);
+                sky.setTranslateX(tileX * Main.BLOCK_SIZE);
+                sky.setTranslateY(tileY * Main.BLOCK_SIZE);
+                view.group.getChildren().add(0, sky); // Below every image, so it never covers the row under it
+                view.skies.put(tileX, tileY, sky);
+            }
+            sky.setVisible(true);
+        } else if (sky != null) {
+            sky.setVisible(false);
+        }
+        Node tile = view.tiles.get(tileX, tileY);
+        String imageFile = type == BlockGrid.EMPTY ? null : BlockGrid.blockOf(type).getImageFile();
+        if (imageFile == null) { // Sky or dug, no image
+            if (tile != null) {
+                tile.setVisible(false);
+            }
+        } else if (tile == null) {
+            ImageView blockView = createImageView(imageFile, tileX, tileY);
+            view.group.getChildren().add(blockView);
+            view.tiles.put(tileX, tileY, blockView);
+        } else { // Swap the sprite of the existing node
+            sprites.apply((ImageView) tile, imageFile);
+            tile.setVisible(true);
+        }
+    }
+
+    /**
+     * Redraws a single cell using the tile index of its chunk.
+     * Cells in chunks that are not visible are skipped, they are drawn from the grid when they come into view.
+     * Dug cells hide their node instead of removing it, it is shown again if the cell gets a block back.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    @Override
+    public void redrawCell(int x, int y) {
+        ChunkView view = visibleChunks.get(ChunkedWorld.chunkKey(x >> ChunkedWorld.CHUNK_SHIFT, y >> ChunkedWorld.CHUNK_SHIFT));
+        if (view == null) return;
+        drawTile(view, x - (view.chunkX << ChunkedWorld.CHUNK_SHIFT), y - (view.chunkY << ChunkedWorld.CHUNK_SHIFT));
+    }
+
+    /**
+     * Puts a chunk view that left the scene in the pool, unless the pool is full.
+     */
+    private static void recycle(ChunkView view) {
+        if (POOL.size() < MAX_POOLED_CHUNKS) {
+            POOL.push(view);
+        }
+    }
+
+    /**
+     * Takes every chunk off the scene and puts their views in the pool for the next drawGrid or the next game.
+     */
+    @Override
+    public void release() {
+        for (ChunkView view : visibleChunks.values()) {
+            recycle(view);
+        }
+        visibleChunks.clear();
+        worldLayer.getChildren().clear();
+    }
+
+    /**
+     * Moves the driller view to the driller's position and shows its current sprite.
+     * Scrolls the world when the camera has to follow the driller.
+     * @param driller The driller to draw.
+     */
+    @Override
+    public void drawDriller(Driller driller) {
+        if (camera.follow(driller, grid)) {
+            GameEvents.RenderPass event = new GameEvents.RenderPass();
+            event.begin();
+            moveWorldLayer();
+            updateVisibleChunks();
+            commitPass(event, "scroll");
+        }
+        drillerView.setTranslateX(driller.getViewX());
+        drillerView.setTranslateY(driller.getViewY());
+        sprites.apply(drillerView, driller.getSprite());
     }
 }
@@ -1,13 +1,31 @@
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * GridInitializer is a class responsible for initializing a grid of blocks.
- * The grid is a 2D array of Block objects.
+ * The grid is a BlockGrid holding one block type code per cell, or a single chunk of a ChunkedWorld.
+ * Grids are generated from a seed in bands of rows. Every band has its own random generator whose seed is drawn
+ * from the grid seed in band order, so the bands can be filled in parallel and the same seed always gives the same grid.
  */
 public class GridInitializer {
+    public static final double DEFAULT_SOIL_SHARE = 0.80; // Share of the randomized cells that are soil
+    private static final byte RANDOM_CELL = -1; // Marks cells that are filled from the randomized array
+    private static final int BAND_ROWS = 64; // Rows generated together from one random generator
+    private static final int PARALLEL_BANDS = 4; // Grids with fewer bands are not worth splitting across threads
     private final int gridHeight;
     private final int gridWidth;
+    private final double soilShare;
+
+    // Block types to choose from when filling the non-soil share of the grid
+    private static final byte[] RANDOM_BLOCK_TYPES = {
+            BlockGrid.DIAMOND, BlockGrid.EMERALD, BlockGrid.AMAZONITE, BlockGrid.PLATINUM, BlockGrid.LAVA, BlockGrid.SOIL
+    };
+
+    // Block types placed once to ensure there is at least one of each
+    private static final byte[] GUARANTEED_BLOCK_TYPES = {
+            BlockGrid.LAVA, BlockGrid.DIAMOND, BlockGrid.EMERALD, BlockGrid.AMAZONITE, BlockGrid.PLATINUM
+    };
 
     /**
      * Constructor for GridInitializer.
@@ -15,66 +33,212 @@ public class GridInitializer {
      * @param gridWidth The width of the grid to be initialized.
      */
     public GridInitializer(int gridHeight, int gridWidth) {
+        this(gridHeight, gridWidth, DEFAULT_SOIL_SHARE);
+    }
+
+    /**
+     * Constructor for GridInitializer with a soil share of its own, for comparing generated maps with MapAnalyzer.
+     * @param gridHeight The height of the grid to be initialized.
+     * @param gridWidth The width of the grid to be initialized.
+     * @param soilShare The share of the randomized cells that are soil, from 0 to 1.
+     * @throws IllegalArgumentException If the soil share is not between 0 and 1.
+     */
+    public GridInitializer(int gridHeight, int gridWidth, double soilShare) {
+        if (!(soilShare >= 0 && soilShare <= 1)) { // Also rejects NaN
+            throw new IllegalArgumentException("Soil share must be between 0 and 1: " + soilShare);
+        }
         this.gridHeight = gridHeight;
         this.gridWidth = gridWidth;
-        initializeGrid();
+        this.soilShare = soilShare;
     }
 
     /**
-     * Generates a random Block object.
-     * @return A random Block object.
+     * Generates a random block type code.
+     * @param random The random generator to draw from.
+     * @return A random block type code.
      */
-    private Block getRandomBlock() {
-        // Block types to choose from
-        Block[] blockTypes = {new DiamondBlock(), new EmeraldBlock(), new AmazoniteBlock(), new PlatinumBlock(), new LavaBlock(), new SoilBlock()};
-        return blockTypes[(int) (Math.random() * blockTypes.length)]; // Randomly choose a block type
+    private byte getRandomBlock(SplittableRandom random) {
+        return RANDOM_BLOCK_TYPES[random.nextInt(RANDOM_BLOCK_TYPES.length)]; // Randomly choose a block type
     }
 
     /**
-     * Generates an array of Block objects.
-     * @return An array of Block objects.
+     * Generates an array of block type codes.
+     * @param totalBlocks The number of block type codes to generate.
+     * @param random The random generator to draw from.
+     * @param guaranteed True to place one block of each guaranteed type in the array.
+     * @return An array of block type codes.
      */
-    private Block[] generateBlockArray() {
-        int totalBlocks = (gridHeight-1) * (gridWidth-6); // Total blocks in the grid to randomly create, other blocks are predetermined (like sky, top, boulder at edges)
-        int soilBlocks = (int)(totalBlocks * 0.80); // 80% of this ensures that soil blocks are majority (i don't know consider sky blocks to affect majority)
-        Block[] blocks = new Block[totalBlocks];
-        Arrays.fill(blocks, 0, soilBlocks, new SoilBlock()); // Fill the first 70% of the array with soil blocks
+    private byte[] generateBlockArray(int totalBlocks, SplittableRandom random, boolean guaranteed) {
+        int soilBlocks = (int)(totalBlocks * soilShare); // 80% by default ensures that soil blocks are majority (i don't know consider sky blocks to affect majority)
+        byte[] blocks = new byte[totalBlocks];
+        Arrays.fill(blocks, 0, soilBlocks, BlockGrid.SOIL); // Fill the first 80% of the array with soil blocks
         // Fill the array with one lava block, one diamond block, one emerald block, one amazonite block, and one platinum block to ensure there is at least one of each
-        blocks[soilBlocks] = new LavaBlock();
-        blocks[soilBlocks+1] = new DiamondBlock();
-        blocks[soilBlocks+2] = new EmeraldBlock();
-        blocks[soilBlocks+3] = new AmazoniteBlock();
-        blocks[soilBlocks+4] = new PlatinumBlock();
+        int index = soilBlocks;
+        for (int i = 0; guaranteed && i < GUARANTEED_BLOCK_TYPES.length && index < totalBlocks; i++) {
+            blocks[index++] = GUARANTEED_BLOCK_TYPES[i];
+        }
         // Fill the rest of the array with random blocks
-        for (int i = soilBlocks+5; i < totalBlocks; i++) {
-            blocks[i] = getRandomBlock();
+        for (; index < totalBlocks; index++) {
+            blocks[index] = getRandomBlock(random);
         }
-        Collections.shuffle(Arrays.asList(blocks)); // At the end, shuffle the array to randomize the block order
+        shuffle(blocks, random); // At the end, shuffle the array to randomize the block order
         return blocks; // We return a randomized array of blocks
     }
 
     /**
-     * Initializes a grid of blocks.
-     * @return A 2D array of Block objects.
+     * Shuffles the array in place with a Fisher-Yates shuffle.
+     * @param blocks The block type codes to shuffle.
+     * @param random The random generator to draw from.
+     */
+    private void shuffle(byte[] blocks, SplittableRandom random) {
+        for (int i = blocks.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte swap = blocks[i];
+            blocks[i] = blocks[j];
+            blocks[j] = swap;
+        }
+    }
+
+    /**
+     * Returns the predetermined block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The block type code, or RANDOM_CELL if the cell is filled from the randomized array.
+     */
+    private byte fixedBlock(int x, int y) {
+        if (y < 4) {
+            return BlockGrid.SKY; // Top two rows are sky
+        } else if (y == 4) {
+            return BlockGrid.TOP; // Third row is top
+        } else if (x == 0 || x == gridWidth - 1 || y == gridHeight - 1) {
+            return BlockGrid.BOULDER; // Edges are boulder
+        }
+        return RANDOM_CELL; // Rest of the blocks are from the randomized array
+    }
+
+    /**
+     * Initializes a grid of blocks from a random seed.
+     * @return A BlockGrid holding the block type codes.
+     */
+    public BlockGrid initializeGrid() {
+        return initializeGrid(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Initializes a grid of blocks from a seed, the same seed always gives the same grid.
+     * The bands are filled in parallel on large grids, the result does not depend on the number of threads.
+     * @param seed The seed of the grid.
+     * @return A BlockGrid holding the block type codes.
+     */
+    public BlockGrid initializeGrid(long seed) {
+        GameEvents.WorldGeneration event = new GameEvents.WorldGeneration();
+        event.begin();
+        int bandCount = (gridHeight + BAND_ROWS - 1) / BAND_ROWS;
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] bandSeeds = new long[bandCount];
+        for (int band = 0; band < bandCount; band++) {
+            bandSeeds[band] = random.nextLong(); // Drawn in band order, before any band is filled
+        }
+        int guaranteedBand = chooseGuaranteedBand(bandCount, random);
+        BlockGrid grid = new BlockGrid(gridWidth, gridHeight); // Initialize the grid
+        IntStream bands = IntStream.range(0, bandCount);
+        if (bandCount >= PARALLEL_BANDS) {
+            bands = bands.parallel(); // Bands write to disjoint rows of the grid
+        }
+        bands.forEach(band -> fillBand(grid, band, new SplittableRandom(bandSeeds[band]), band == guaranteedBand));
+        if (event.shouldCommit()) {
+            event.width = gridWidth;
+            event.height = gridHeight;
+            event.seed = seed;
+            event.bands = bandCount;
+            event.commit();
+        }
+        return grid;
+    }
+
+    /**
+     * Chooses the band that gets one block of each guaranteed type, among the bands with room for all of them.
+     * @param bandCount The number of bands in the grid.
+     * @param random The random generator to draw from.
+     * @return The index of the band, or -1 if the grid has no cells to randomize.
+     */
+    private int chooseGuaranteedBand(int bandCount, SplittableRandom random) {
+        int[] candidates = new int[bandCount];
+        int candidateCount = 0;
+        int largestBand = -1;
+        int largestCells = 0;
+        for (int band = 0; band < bandCount; band++) {
+            int cells = randomCellsInBand(band);
+            if (cells - (int)(cells * soilShare) >= GUARANTEED_BLOCK_TYPES.length) {
+                candidates[candidateCount++] = band;
+            }
+            if (cells > largestCells) {
+                largestCells = cells;
+                largestBand = band;
+            }
+        }
+        // On a grid too small for all of them, the largest band gets as many as fit like before
+        return candidateCount > 0 ? candidates[random.nextInt(candidateCount)] : largestBand;
+    }
+
+    /**
+     * Counts the cells of a band that are filled from the randomized array.
+     * @param band The index of the band.
+     * @return The number of cells left for the randomized array.
      */
-    public Block[][] initializeGrid() {
-        Block[] blocks = generateBlockArray(); // Generate a randomized array of blocks
+    private int randomCellsInBand(int band) {
+        int firstRow = Math.max(band * BAND_ROWS, 5); // Sky and top rows are predetermined
+        int lastRow = Math.min((band + 1) * BAND_ROWS, gridHeight - 1); // Bottom row is boulder
+        return Math.max(lastRow - firstRow, 0) * Math.max(gridWidth - 2, 0); // Left and right edges are boulder
+    }
+
+    /**
+     * Fills the rows of one band, the soil share is applied to the band's own cells.
+     * @param grid The grid to fill.
+     * @param band The index of the band.
+     * @param random The random generator of the band.
+     * @param guaranteed True if this band holds one block of each guaranteed type.
+     */
+    private void fillBand(BlockGrid grid, int band, SplittableRandom random, boolean guaranteed) {
+        byte[] blocks = generateBlockArray(randomCellsInBand(band), random, guaranteed); // Generate a randomized array of blocks
         int blockIndex = 0;
-        Block[][] grid = new Block[gridHeight][gridWidth]; // Initialize the grid
-        // Loop through the grid and assign blocks
-        for (int y = 0; y < gridHeight; y++) {
+        int endY = Math.min((band + 1) * BAND_ROWS, gridHeight);
+        // Loop through the band and assign blocks
+        for (int y = band * BAND_ROWS; y < endY; y++) {
             for (int x = 0; x < gridWidth; x++) {
-                if (y < 4) {
-                    grid[y][x] = new SkyBlock(); // Top two rows are sky
-                } else if (y == 4) {
-                    grid[y][x] = new TopBlock(); // Third row is top
-                } else if (x == 0 || x == gridWidth - 1 || y == gridHeight - 1) {
-                    grid[y][x] = new BoulderBlock(); // Edges are boulder
-                } else {
-                    grid[y][x] = blocks[blockIndex++]; // Rest of the blocks are from the randomized array
-                }
+                byte type = fixedBlock(x, y);
+                grid.setType(x, y, type == RANDOM_CELL ? blocks[blockIndex++] : type);
             }
         }
-        return grid;
+    }
+
+    /**
+     * Fills one square chunk of a chunked world.
+     * The rows and edges follow the same rules as initializeGrid and the soil share is applied to the chunk's own cells.
+     * The random generator is seeded from the world seed and the chunk position, so the same chunk is always generated identically.
+     * @param cells The row-major cells of the chunk to fill.
+     * @param originX The x coordinate of the chunk's top left cell.
+     * @param originY The y coordinate of the chunk's top left cell.
+     * @param size The width and height of the chunk in blocks.
+     * @param seed The seed of the world.
+     */
+    public void fillChunk(byte[] cells, int originX, int originY, int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed ^ (originX * 0x9E3779B97F4A7C15L) ^ (originY * 0xC2B2AE3D27D4EB4FL));
+        int totalBlocks = 0;
+        // First pass: place the predetermined blocks and count the cells left for the randomized array
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // Cells past the edge of the world are never read, they are filled with boulders
+                byte type = originX + x < gridWidth && originY + y < gridHeight ? fixedBlock(originX + x, originY + y) : BlockGrid.BOULDER;
+                cells[y * size + x] = type;
+                if (type == RANDOM_CELL) totalBlocks++;
+            }
+        }
+        // Second pass: fill the marked cells from the randomized array
+        byte[] blocks = generateBlockArray(totalBlocks, random, true);
+        int blockIndex = 0;
+        for (int i = 0; i < size * size; i++) {
+            if (cells[i] == RANDOM_CELL) cells[i] = blocks[blockIndex++];
+        }
     }
 }
@@ -0,0 +1,28 @@
+/**
+ * GridRenderer is implemented by the classes that draw the grid and the driller on the game scene.
+ * The game draws everything once with drawGrid and then only tells the renderer what changed.
+ */
+public interface GridRenderer {
+    /**
+     * Draws the whole grid and the driller from scratch.
+     */
+    void drawGrid();
+
+    /**
+     * Redraws a single cell after its block changed in the grid.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    void redrawCell(int x, int y);
+
+    /**
+     * Redraws the driller after its position or image changed.
+     * @param driller The driller to draw.
+     */
+    void drawDriller(Driller driller);
+
+    /**
+     * Takes the grid off the scene and keeps what can be reused by the next drawGrid or the next game.
+     */
+    void release();
+}
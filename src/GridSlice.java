@@ -0,0 +1,65 @@
+/**
+ * GridSlice is one grid of a batch whose grids share a single array, as used by BatchEnvironment.
+ * Its cells are width * height bytes at an offset of the array, row by row like a BlockGrid,
+ * so a batch of grids is one contiguous block of memory that can be copied or read as a whole.
+ */
+public class GridSlice implements MineGrid {
+    private final byte[] cells;
+    private final int offset;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor for GridSlice.
+     * @param cells The array shared by the grids of the batch.
+     * @param offset The index of the grid's top left cell in the array.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    public GridSlice(byte[] cells, int offset, int width, int height) {
+        this.cells = cells;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Getter for the width of the grid.
+     * @return The width of the grid in blocks.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the height of the grid.
+     * @return The height of the grid in blocks.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The type code of the block.
+     */
+    @Override
+    public byte getType(int x, int y) {
+        return cells[offset + y * width + x];
+    }
+
+    /**
+     * Sets the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @param type The new type code of the block.
+     */
+    @Override
+    public void setType(int x, int y, byte type) {
+        cells[offset + y * width + x] = type;
+    }
+}
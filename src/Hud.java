@@ -0,0 +1,147 @@
+import javafx.scene.Node;
+import javafx.scene.text.Text;
+
+/**
+ * Hud shows the money, haul, fuel and flying texts.
+ * The game only stores new values here, and render puts them on the screen once per frame.
+ * A text is only set when the value it shows changed, and its string is built from a reused char buffer,
+ * so a frame with no visible change allocates nothing and does no text layout.
+ */
+public class Hud {
+    private static final int FUEL_SCALE = 100; // Fuel is shown with two decimals
+
+    private final Field money = new Field("Money: ", 10, 60);
+    private final Field haul = new Field("Haul: ", 10, 40);
+    private final Field fuel = new Field("Fuel: ", 10, 20);
+    private final Text flyingText;
+    private boolean flying;
+    private boolean shownFlying;
+    private boolean dirty = true;
+
+    /**
+     * One text showing a label and a number.
+     */
+    private static final class Field {
+        private final Text text = new Text();
+        private final char[] chars = new char[48];
+        private final int labelLength;
+        private long value;
+        private long shown = Long.MIN_VALUE; // Nothing is shown yet
+
+        private Field(String label, int x, int y) {
+            label.getChars(0, label.length(), chars, 0);
+            labelLength = label.length();
+            text.setX(x);
+            text.setY(y);
+        }
+
+        /**
+         * Shows the value if it changed, with the given number of decimals.
+         */
+        private void render(int decimals) {
+            if (value == shown) return;
+            shown = value;
+            int length = format(chars, labelLength, value, decimals);
+            text.setText(new String(chars, 0, length));
+        }
+    }
+
+    /**
+     * Constructor for Hud.
+     * @param money The money to show first.
+     * @param haul The haul to show first.
+     * @param fuel The fuel to show first.
+     * @param flying The flying mode to show first.
+     */
+    public Hud(int money, int haul, double fuel, boolean flying) {
+        flyingText = new Text();
+        flyingText.setX(10);
+        flyingText.setY(80);
+        setMoney(money, haul);
+        setFuel(fuel);
+        this.flying = flying;
+        this.shownFlying = !flying; // Makes the first render set the text
+        render();
+    }
+
+    /**
+     * Returns the texts to add to the scene.
+     */
+    public Node[] getNodes() {
+        return new Node[] {money.text, haul.text, fuel.text, flyingText};
+    }
+
+    /**
+     * Stores the money and haul to show on the next frame.
+     * @param money The money collected so far.
+     * @param haul The haul collected so far.
+     */
+    public void setMoney(int money, int haul) {
+        this.money.value = money;
+        this.haul.value = haul;
+        dirty = true;
+    }
+
+    /**
+     * Stores the fuel to show on the next frame.
+     * @param fuel The fuel level.
+     */
+    public void setFuel(double fuel) {
+        this.fuel.value = Math.round(fuel * FUEL_SCALE);
+        dirty = true;
+    }
+
+    /**
+     * Stores the flying mode to show on the next frame.
+     * @param flying The flying mode.
+     */
+    public void setFlying(boolean flying) {
+        this.flying = flying;
+        dirty = true;
+    }
+
+    /**
+     * Puts the values stored since the last frame on the screen, only the texts that changed are set.
+     */
+    public void render() {
+        if (!dirty) return;
+        dirty = false;
+        money.render(0);
+        haul.render(0);
+        fuel.render(2);
+        if (flying != shownFlying) {
+            shownFlying = flying;
+            flyingText.setText(flying ? "Flying: ON" : "Flying: OFF"); // Constant strings, nothing is built
+        }
+    }
+
+    /**
+     * Writes a fixed point number into a char buffer.
+     * @param chars The buffer.
+     * @param start The index to start writing at.
+     * @param value The number multiplied by 10 to the power of decimals.
+     * @param decimals The number of digits after the decimal point.
+     * @return The index after the last written char.
+     */
+    static int format(char[] chars, int start, long value, int decimals) {
+        int position = start;
+        if (value < 0) {
+            chars[position++] = '-';
+            value = -value;
+        }
+        // Write the digits backwards into the end of the buffer, then move them into place
+        int end = chars.length;
+        int digits = 0;
+        do {
+            if (decimals > 0 && digits == decimals) {
+                chars[--end] = '.';
+            }
+            chars[--end] = (char) ('0' + value % 10);
+            value /= 10;
+            digits++;
+        } while (value > 0 || digits <= decimals);
+        int length = chars.length - end;
+        System.arraycopy(chars, end, chars, position, length);
+        return position + length;
+    }
+}
@@ -2,10 +2,14 @@ import javafx.scene.input.KeyEvent;
 
 /**
  * This class is responsible for handling the keyboard input from user.
- * It contains a reference to the game and provides a method to handle key press events.
+ * It contains a reference to the game and provides methods to handle key press and release events.
+ * Arrow keys do not move the driller themselves, they put a move on the game's command queue, which the game loop plays on its next tick.
  */
 class InputHandler {
     private final Game game;
+    private final long repeatInterval; // Nanoseconds between two moves of a held key
+    private final boolean[] held = new boolean[MineSimulation.Direction.values().length]; // Arrow keys that are down
+    private final long[] lastQueued = new long[MineSimulation.Direction.values().length]; // When each direction was last queued
 
     /**
      * Constructs a new InputHandler associated with the given game.
@@ -14,30 +18,87 @@ class InputHandler {
      */
     public InputHandler(Game game) {
         this.game = game;
+        this.repeatInterval = 1_000_000_000L / Math.max(Main.KEY_REPEAT_RATE, 1);
     }
 
 
     /**
-     * Handles key press events. Depending on the key pressed, it will move the driller in the game (up, down, left, or right).
+     * Handles key press events. An arrow key queues a move of the driller (up, down, left, or right).
+     * The first press always queues a move. While the key is held, the key repeats of the system are coalesced:
+     * a repeat is dropped while the previous move of the key is still waiting in the queue or came less than
+     * one repeat interval ago, so a held key moves at Main.KEY_REPEAT_RATE whatever the system repeat rate is.
+     * F5 saves the mine to a snapshot that can be resumed later, P turns the autopilot on or off.
+     * M shows or hides the metrics overlay and F6 exports the metrics to a CSV file.
      *
      * @param event The key event to handle
      */
     public void handleKeyPressed(KeyEvent event) {
         switch (event.getCode()) {
             case UP:
-                game.getDriller().moveUp();
+                queueMove(MineSimulation.Direction.UP);
                 break;
             case DOWN:
-                game.getDriller().moveDown();
+                queueMove(MineSimulation.Direction.DOWN);
                 break;
             case LEFT:
-                game.getDriller().moveLeft();
+                queueMove(MineSimulation.Direction.LEFT);
                 break;
             case RIGHT:
-                game.getDriller().moveRight();
+                queueMove(MineSimulation.Direction.RIGHT);
+                break;
+            case P:
+                game.toggleAutopilot();
+                break;
+            case F5:
+                game.saveSnapshot();
+                break;
+            case M:
+                game.toggleMetrics();
+                break;
+            case F6:
+                game.exportMetrics();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Handles key release events, the next press of a released arrow key is a new press and not a repeat.
+     *
+     * @param event The key event to handle
+     */
+    public void handleKeyReleased(KeyEvent event) {
+        switch (event.getCode()) {
+            case UP:
+                held[MineSimulation.Direction.UP.ordinal()] = false;
+                break;
+            case DOWN:
+                held[MineSimulation.Direction.DOWN.ordinal()] = false;
+                break;
+            case LEFT:
+                held[MineSimulation.Direction.LEFT.ordinal()] = false;
+                break;
+            case RIGHT:
+                held[MineSimulation.Direction.RIGHT.ordinal()] = false;
                 break;
             default:
                 break;
         }
     }
+
+    /**
+     * Puts a move on the command queue unless it is a key repeat that is coalesced.
+     */
+    private void queueMove(MineSimulation.Direction direction) {
+        int key = direction.ordinal();
+        long now = System.nanoTime();
+        if (held[key] && (game.getCommands().isPending(direction) || now - lastQueued[key] < repeatInterval)) {
+            return; // A repeat of a held key that is too soon
+        }
+        held[key] = true;
+        if (game.getCommands().offer(direction)) {
+            lastQueued[key] = now;
+        }
+    }
 }
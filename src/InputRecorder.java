@@ -0,0 +1,102 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * InputRecorder keeps the moves of a session as a compact binary log that InputReplay can play back.
+ * The file starts with a header holding the world seed, the world size and the tick rate, followed by one varint per event:
+ * the ticks since the previous event shifted left by three bits, and the event code in the low three bits.
+ * Moves a few ticks apart take a single byte.
+ */
+public class InputRecorder {
+    public static final int MAGIC = 0x48554C52; // "HULR" at the start of every recording
+    public static final byte VERSION = 3; // 2 since blocks fall and 3 since lava flows, a recording of older rules would not replay the same
+    public static final int CODE_BITS = 3; // Low bits of an event holding its code
+    public static final int END = 7; // Event code marking the tick the session ended at, the directions use their ordinals
+
+    private final long seed;
+    private final int worldWidth;
+    private final int worldHeight;
+    private final int tickRate;
+    private byte[] events = new byte[256];
+    private int length;
+    private long lastTick;
+    private boolean finished = false;
+
+    /**
+     * Constructor for InputRecorder.
+     * @param seed The seed the world was generated from.
+     * @param worldWidth The width of the world in blocks.
+     * @param worldHeight The height of the world in blocks.
+     * @param tickRate The number of game loop ticks per second.
+     */
+    public InputRecorder(long seed, int worldWidth, int worldHeight, int tickRate) {
+        this.seed = seed;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        this.tickRate = tickRate;
+    }
+
+    /**
+     * Records a move made after the given game loop tick ran.
+     * @param tick The number of the last tick that ran.
+     * @param direction The direction of the move.
+     */
+    public void record(long tick, MineSimulation.Direction direction) {
+        writeEvent(tick, direction.ordinal());
+    }
+
+    /**
+     * Records the tick the session ended at, later moves are ignored.
+     * @param tick The number of the last tick that ran.
+     */
+    public void finish(long tick) {
+        writeEvent(tick, END);
+        finished = true;
+    }
+
+    /**
+     * Returns true once the end of the session is recorded.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Appends one event to the log.
+     * @param tick The number of the last tick that ran.
+     * @param code The event code.
+     */
+    private void writeEvent(long tick, int code) {
+        if (finished) return;
+        long value = ((tick - lastTick) << CODE_BITS) | code;
+        lastTick = tick;
+        if (length + 10 > events.length) { // A varint of a long takes at most ten bytes
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+        while ((value & ~0x7FL) != 0) {
+            events[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        events[length++] = (byte) value;
+    }
+
+    /**
+     * Writes the header and the events to a file.
+     * @param path The file to write.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            out.writeInt(worldWidth);
+            out.writeInt(worldHeight);
+            out.writeInt(tickRate);
+            out.write(events, 0, length);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * InputReplay plays a session recorded by InputRecorder back without a window and as fast as the simulation runs.
+ * The world is generated again from the recorded seed, and gravity and fuel drain are registered on a game loop
+ * in the same order as the game does. The loop is stepped tick by tick instead of being driven by frames,
+ * and every move is made after the tick it was recorded at, so the replay ends in the same state as the session.
+ *
+ * Usage: java InputReplay session.hulr [more recordings or directories...]
+ * prints the final money, haul, fuel and cause of every recording as CSV.
+ */
+public class InputReplay {
+    private static final MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+
+    private final long seed;
+    private final int worldWidth;
+    private final int worldHeight;
+    private final int tickRate;
+    private final long[] ticks; // Tick of each move
+    private final byte[] directions; // Direction ordinal of each move
+    private final long endTick; // Tick the session ended at, -1 if the recording has no end event
+
+    /**
+     * Constructor for InputReplay, decodes a recording.
+     * @param bytes The contents of a recording file.
+     */
+    public InputReplay(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < 25 || buffer.getInt() != InputRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not an input recording");
+        }
+        byte version = buffer.get();
+        if (version != InputRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported recording version: " + version);
+        }
+        seed = buffer.getLong();
+        worldWidth = buffer.getInt();
+        worldHeight = buffer.getInt();
+        tickRate = buffer.getInt();
+
+        long[] eventTicks = new long[Math.max(buffer.remaining(), 1)]; // Every event takes at least one byte
+        byte[] eventDirections = new byte[eventTicks.length];
+        int count = 0;
+        long tick = 0;
+        long end = -1;
+        while (buffer.hasRemaining() && end < 0) {
+            long value = readVarLong(buffer);
+            tick += value >>> InputRecorder.CODE_BITS;
+            int code = (int) (value & ((1 << InputRecorder.CODE_BITS) - 1));
+            if (code == InputRecorder.END) {
+                end = tick;
+            } else if (code < DIRECTIONS.length) {
+                eventTicks[count] = tick;
+                eventDirections[count++] = (byte) code;
+            } else {
+                throw new IllegalArgumentException("Unknown event code: " + code);
+            }
+        }
+        ticks = Arrays.copyOf(eventTicks, count);
+        directions = Arrays.copyOf(eventDirections, count);
+        endTick = end;
+    }
+
+    /**
+     * Reads one unsigned varint.
+     * @param buffer The buffer to read from.
+     * @return The decoded value.
+     */
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint in recording");
+    }
+
+    /**
+     * Reads a recording from a file.
+     * @param path The file to read.
+     * @return The decoded recording.
+     */
+    public static InputReplay read(Path path) throws IOException {
+        return new InputReplay(Files.readAllBytes(path));
+    }
+
+    /**
+     * Plays the recording back on a new world generated from its seed.
+     * @return The simulation in the state the session ended in.
+     */
+    public MineSimulation run() {
+        MineSimulation simulation = new MineSimulation(Game.createGrid(worldWidth, worldHeight, seed), 1, 1);
+        GameLoop loop = new GameLoop(tickRate, GameLoop.DEFAULT_MAX_CATCH_UP_TICKS);
+        // Same handlers in the same order as Driller.startGravity and Driller.startFuelTimer
+        loop.register(tick -> simulation.applyGravity(), MineSimulation.GRAVITY_DELAY);
+        loop.register(tick -> simulation.drainFuel(), MineSimulation.FUEL_DELAY);
+        for (int i = 0; i < ticks.length && !simulation.isGameOver(); i++) {
+            while (loop.getTick() < ticks[i] && !simulation.isGameOver()) {
+                loop.step();
+            }
+            simulation.move(DIRECTIONS[directions[i]]);
+        }
+        while (loop.getTick() < endTick && !simulation.isGameOver()) {
+            loop.step();
+        }
+        return simulation;
+    }
+
+    /**
+     * Returns the seed the recorded world was generated from.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the number of moves in the recording.
+     */
+    public int getMoveCount() {
+        return ticks.length;
+    }
+
+    /**
+     * Returns the tick the session ended at, or -1 if the recording has no end.
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    /**
+     * Replays every recording given on the command line, directories are searched for recordings.
+     * The recordings are replayed in parallel and printed in the order they were given.
+     */
+    public static void main(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(Files::isRegularFile).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        long start = System.nanoTime();
+        String[] lines = files.parallelStream().map(InputReplay::replayLine).toArray(String[]::new);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("file,seed,moves,money,haul,fuel,end_tick,cause");
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        System.err.printf(Locale.ROOT, "%d recordings in %.2f s%n", files.size(), seconds);
+    }
+
+    /**
+     * Replays one recording and formats its final state as a CSV line.
+     * @param path The recording to replay.
+     * @return The CSV line, or the error if the file could not be replayed.
+     */
+    private static String replayLine(Path path) {
+        try {
+            InputReplay replay = read(path);
+            MineSimulation simulation = replay.run();
+            return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.2f,%d,%s", path, replay.seed, replay.ticks.length,
+                    simulation.getMoney(), simulation.getHaul(), simulation.getFuel(), replay.endTick,
+                    simulation.getCause() == null ? "" : simulation.getCause().name().toLowerCase(Locale.ROOT));
+        } catch (IOException | RuntimeException e) {
+            return path + ",error," + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram counts durations in nanoseconds with a precision that does not depend on their size.
+ * Values below 256 have a bucket each, above that every power of two is split into 128 buckets,
+ * so a percentile is always within 1% of the real value from nanoseconds up to minutes.
+ * It is meant to be recorded into by one thread, recording is a few shifts and an array increment and never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 8;
+    private static final int SUB_COUNT = 1 << SUB_BITS; // Values below this have a bucket each
+    private static final int HALF_COUNT = SUB_COUNT >> 1; // Buckets per power of two above SUB_COUNT
+    private static final long MAX_VALUE = (1L << 40) - 1; // About 18 minutes, longer values are counted as this
+    private static final int BUCKET_COUNT = bucketOf(MAX_VALUE) + 1;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long max;
+
+    /**
+     * Returns the bucket of a value.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value counted in a bucket.
+     */
+    private static long highestOf(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = bucket / HALF_COUNT - 1;
+        long lowest = (long) (bucket % HALF_COUNT + HALF_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Counts a value, negative values are counted as 0.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        buckets[bucketOf(value)]++;
+        count++;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds the values counted by another histogram, to merge the histograms of several threads once they are done.
+     * @param other The histogram to add, it is not changed.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value at or below which the given share of the values was counted.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value of the bucket holding the percentile, 0 if nothing was counted.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= target) return Math.min(highestOf(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of values counted.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value counted.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Forgets every value counted.
+     */
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        max = 0;
+    }
+}
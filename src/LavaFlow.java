@@ -0,0 +1,255 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * LavaFlow decides which dug cells lava flows into.
+ * Lava spreads one cell per step into every dug cell left of, right of or below a lava cell. A step only reads the grid and
+ * writes its result to a separate buffer, the simulation turns the cells into lava afterwards, so the grid of a step is
+ * never read half updated and the result is the same whatever order the cells are looked at in.
+ *
+ * The FULL mode looks at every cell of a BlockGrid. The rows are split into stripes of STRIPE_ROWS that run in parallel
+ * on the fork-join pool, each stripe writing only the words of its own rows in a bitset, and the bitset is read in row order.
+ * The FRONTIER mode only looks at the dug cells that were emptied, or that are next to a cell that turned into lava, since
+ * the last step, so a mine full of lava costs as much as the edge of the lava and not the size of the grid.
+ * Large frontiers are checked in parallel parts the same way. Both modes give the same cells in the same order.
+ * Only a BlockGrid is read in parallel and swept fully, a ChunkedWorld loads chunks as it is read and always uses the frontier.
+ * Dug cells of a resumed grid are not on the frontier, so the first step of a BlockGrid sweeps it and the first step of a
+ * ChunkedWorld seeds the frontier from the chunks that differ from the generator, the only ones that can hold dug cells.
+ */
+public class LavaFlow {
+    public static final int STRIPE_ROWS = 64; // Rows of a stripe of the full sweep
+    private static final int PARALLEL_STRIPES = 4; // Stripes needed before the full sweep runs in parallel
+    private static final int FRONTIER_PART = 1024; // Frontier cells checked by one parallel task
+    private static final int PARALLEL_FRONTIER = 4 * FRONTIER_PART; // Frontier cells needed before they are checked in parallel
+
+    /**
+     * How a step finds the cells lava flows into.
+     */
+    public enum Mode { FULL, FRONTIER }
+
+    private final MineGrid grid;
+    private final int width;
+    private final int height;
+    private final boolean blockGrid; // Reading the grid from several threads is safe
+    private final ActiveCells frontier = new ActiveCells(); // Dug cells lava may flow into
+    private Mode mode = Mode.FRONTIER;
+    private boolean swept = false; // The first step sweeps the whole grid or seeds the frontier, dug cells from a snapshot are not on it
+    private long[] marks; // Back buffer of the full sweep, one bit per cell, row by row
+    private int words; // Longs in one row of the marks
+    private boolean[] frontierMarks = new boolean[64]; // Back buffer of the frontier, one entry per frontier cell
+    private long[] flooded = new long[64]; // Cells of the last step, packed as (y << 32) | x, in row order
+    private int floodedCount;
+    private int checked; // Cells looked at in the last step
+
+    /**
+     * Constructor for LavaFlow.
+     * @param grid The grid the lava flows in.
+     */
+    public LavaFlow(MineGrid grid) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.blockGrid = grid instanceof BlockGrid;
+    }
+
+    /**
+     * Chooses how the next steps find the cells, both modes give the same result.
+     * @param mode The mode, FULL only applies to a BlockGrid.
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the mode chosen for the steps.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Puts a dug cell on the frontier, called when a cell becomes empty.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    public void cellEmptied(int x, int y) {
+        frontier.add(x, y, false);
+    }
+
+    /**
+     * Puts the cells lava can flow into from a new lava cell on the frontier, called when a cell turns into lava.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    public void cellFlooded(int x, int y) {
+        if (x > 0) frontier.add(x - 1, y, false);
+        if (x + 1 < width) frontier.add(x + 1, y, false);
+        if (y + 1 < height) frontier.add(x, y + 1, false);
+    }
+
+    /**
+     * Forgets the frontier, for a grid whose cells were refilled. The next step sweeps the whole grid again.
+     */
+    public void reset() {
+        frontier.clear();
+        swept = false;
+        floodedCount = 0;
+        checked = 0;
+    }
+
+    /**
+     * Finds the dug cells that turn into lava in this step, without changing the grid.
+     * @return The number of cells, read them with getX and getY.
+     */
+    public int step() {
+        floodedCount = 0;
+        if (blockGrid && (mode == Mode.FULL || !swept)) {
+            frontier.swap(); // The sweep finds every cell the frontier holds
+            swept = true;
+            sweep();
+        } else {
+            if (!swept && grid instanceof ChunkedWorld) {
+                seedFrontier((ChunkedWorld) grid);
+            }
+            swept = true;
+            checkFrontier();
+        }
+        return floodedCount;
+    }
+
+    /**
+     * Puts the dug cells of a chunked world that lava may flow into on the frontier, in place of a full sweep.
+     * A dug cell is added when lava is left of, right of or above it in its chunk, or when it is on the left, right or top
+     * edge of its chunk, where the frontier check reads the neighbour from the next chunk.
+     */
+    private void seedFrontier(ChunkedWorld world) {
+        int size = ChunkedWorld.CHUNK_SIZE;
+        world.forEachChangedChunk((chunkX, chunkY, cells) -> {
+            for (int localY = 0; localY < size && (chunkY << ChunkedWorld.CHUNK_SHIFT) + localY < height; localY++) {
+                for (int localX = 0; localX < size && (chunkX << ChunkedWorld.CHUNK_SHIFT) + localX < width; localX++) {
+                    int i = localY * size + localX;
+                    if (cells[i] != BlockGrid.EMPTY) continue;
+                    if (localX == 0 || localX == size - 1 || localY == 0 || cells[i - 1] == BlockGrid.LAVA
+                            || cells[i + 1] == BlockGrid.LAVA || cells[i - size] == BlockGrid.LAVA) {
+                        cellEmptied((chunkX << ChunkedWorld.CHUNK_SHIFT) + localX, (chunkY << ChunkedWorld.CHUNK_SHIFT) + localY);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Looks at every cell of the grid, in parallel stripes on large grids.
+     */
+    private void sweep() {
+        if (marks == null) {
+            words = (width + 63) >> 6;
+            marks = new long[height * words];
+        }
+        int stripes = (height + STRIPE_ROWS - 1) / STRIPE_ROWS;
+        IntStream range = IntStream.range(0, stripes);
+        if (stripes >= PARALLEL_STRIPES) {
+            range = range.parallel(); // Each stripe writes only the words of its own rows
+        }
+        range.forEach(this::sweepStripe);
+        checked = width * height;
+        // Read the marks in row order, every row was written by exactly one stripe
+        for (int y = 0; y < height; y++) {
+            for (int word = 0; word < words; word++) {
+                long bits = marks[y * words + word];
+                if (bits == 0) continue;
+                marks[y * words + word] = 0;
+                while (bits != 0) {
+                    addFlooded((word << 6) + Long.numberOfTrailingZeros(bits), y);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the cells of one stripe that lava flows into.
+     */
+    private void sweepStripe(int stripe) {
+        int endY = Math.min(height, (stripe + 1) * STRIPE_ROWS);
+        for (int y = stripe * STRIPE_ROWS; y < endY; y++) {
+            for (int x = 0; x < width; x++) {
+                if (floods(x, y)) {
+                    marks[y * words + (x >> 6)] |= 1L << x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks at the cells of the frontier, in parallel parts when there are many of them.
+     */
+    private void checkFrontier() {
+        int count = frontier.swap();
+        checked = count;
+        if (count == 0) return;
+        if (frontierMarks.length < count) {
+            frontierMarks = new boolean[Math.max(count, frontierMarks.length * 2)];
+        }
+        if (blockGrid && count >= PARALLEL_FRONTIER) {
+            int parts = (count + FRONTIER_PART - 1) / FRONTIER_PART;
+            IntStream.range(0, parts).parallel().forEach(part -> checkFrontierPart(part * FRONTIER_PART, Math.min(count, (part + 1) * FRONTIER_PART)));
+        } else {
+            checkFrontierPart(0, count);
+        }
+        for (int i = count - 1; i >= 0; i--) { // The frontier is numbered bottom row first, read it back in row order
+            if (frontierMarks[i]) {
+                addFlooded(frontier.getX(i), frontier.getY(i));
+            }
+        }
+    }
+
+    /**
+     * Marks the frontier cells of one part that lava flows into.
+     */
+    private void checkFrontierPart(int start, int end) {
+        for (int i = start; i < end; i++) {
+            frontierMarks[i] = floods(frontier.getX(i), frontier.getY(i));
+        }
+    }
+
+    /**
+     * Returns true if a cell is dug and has lava on its left, on its right or above it.
+     */
+    private boolean floods(int x, int y) {
+        if (grid.getType(x, y) != BlockGrid.EMPTY) return false;
+        return (x > 0 && grid.getType(x - 1, y) == BlockGrid.LAVA)
+                || (x + 1 < width && grid.getType(x + 1, y) == BlockGrid.LAVA)
+                || (y > 0 && grid.getType(x, y - 1) == BlockGrid.LAVA);
+    }
+
+    private void addFlooded(int x, int y) {
+        if (floodedCount == flooded.length) {
+            flooded = Arrays.copyOf(flooded, floodedCount * 2);
+        }
+        flooded[floodedCount++] = ((long) y << 32) | x;
+    }
+
+    /**
+     * Returns the x coordinate of a cell found by the last step.
+     * @param index The number of the cell, cells are in row order.
+     */
+    public int getX(int index) {
+        return (int) flooded[index];
+    }
+
+    /**
+     * Returns the y coordinate of a cell found by the last step.
+     * @param index The number of the cell, cells are in row order.
+     */
+    public int getY(int index) {
+        return (int) (flooded[index] >>> 32);
+    }
+
+    /**
+     * Returns the number of cells the last step looked at.
+     */
+    public int getChecked() {
+        return checked;
+    }
+}
@@ -11,8 +11,22 @@ import javafx.stage.Stage;
  */
 public class Main extends Application {
     public static final int BLOCK_SIZE = 50; // Size of each block
-    public static final int GRID_WIDTH = 20; // Grid width in blocks
-    public static final int GRID_HEIGHT = 13; // Grid height in blocks
+    public static final int GRID_WIDTH = 20; // Visible grid width in blocks
+    public static final int GRID_HEIGHT = 13; // Visible grid height in blocks
+    public static final int WORLD_WIDTH = Integer.getInteger("world.width", GRID_WIDTH); // World width in blocks, wider worlds scroll
+    public static final int WORLD_HEIGHT = Integer.getInteger("world.depth", GRID_HEIGHT); // World height in blocks, deeper worlds scroll
+    public static final int TICK_RATE = Integer.getInteger("tick.rate", GameLoop.DEFAULT_TICK_RATE); // Simulation ticks per second
+    public static final int MAX_CATCH_UP_TICKS = Integer.getInteger("tick.maxCatchUp", GameLoop.DEFAULT_MAX_CATCH_UP_TICKS); // Ticks run at most in one frame after a frame drop
+    public static final long WORLD_SEED = Long.getLong("world.seed", System.nanoTime()); // Seed the world is generated from, the same seed gives the same world
+    public static final String RECORD_FILE = System.getProperty("record"); // File the player's moves are recorded to for InputReplay, null to not record
+    public static final String SNAPSHOT_FILE = System.getProperty("snapshot", "mine.snapshot"); // File the mine is saved to with F5
+    public static final boolean RESUME = Boolean.getBoolean("resume"); // True to resume the mine saved in SNAPSHOT_FILE
+    public static final String AUTOSAVE_DIR = System.getProperty("autosave"); // Directory the running mine is journaled to and recovered from, null to not autosave
+    public static final int KEY_REPEAT_RATE = Integer.getInteger("input.repeatRate", 10); // Moves per second while an arrow key is held
+    public static final int MOVES_PER_TICK = Integer.getInteger("input.movesPerTick", 1); // Queued moves played at most in one tick
+    public static final String METRICS_FILE = System.getProperty("metrics", "metrics.csv"); // File the metrics are exported to with F6
+    public static final LavaFlow.Mode LAVA_MODE = LavaFlow.Mode.valueOf(System.getProperty("lava.mode", "frontier").toUpperCase(java.util.Locale.ROOT)); // How the lava flow finds its cells, the result is the same
+    public static final String RENDER_MODE = System.getProperty("renderer", "nodes"); // "nodes" for one node per tile, "canvas" to paint the grid on canvases
 
     /**
      * This method is overrides start in Application.
@@ -29,22 +43,29 @@ public class Main extends Application {
         gameScene.setPrefSize(GRID_WIDTH * BLOCK_SIZE, GRID_HEIGHT * BLOCK_SIZE);
         gameScene.setStyle("-fx-background-color: #c07e3d;");
 
-        // Start the game by starting the gravity and fuel timer
+        // Start the game by registering gravity, the fuel timer and the input queue and starting the game loop
         Game game = new Game(gameScene);
         game.getDriller().startGravity();
         game.getDriller().startFuelTimer();
+        game.startInput();
+        game.getLoop().start();
 
         final Scene scene = new Scene(gameScene); // Create a new Scene with the game scene as the root
 
         // Set up input handling for the scene
         InputHandler inputHandler = new InputHandler(game);
         scene.setOnKeyPressed(inputHandler::handleKeyPressed);
+        scene.setOnKeyReleased(inputHandler::handleKeyReleased);
 
         // Set the title, scene, icon and show the primary stage
         primaryStage.setTitle("HU-Load");
         primaryStage.setScene(scene);
         primaryStage.setResizable(false); // Add this line to enter full screen mode
         primaryStage.getIcons().add(new Image("assets/drill/drill_11.png"));
+        primaryStage.setOnHidden(event -> { // Keep the recording and the autosave of a session that is closed before it ends
+            game.saveRecording();
+            game.closeAutosave();
+        });
         primaryStage.show();
 
     }
@@ -0,0 +1,331 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * MapAnalyzer generates many maps with GridInitializer and measures how good they are to play, to tune the generator with data.
+ * For every map it counts the ores and the lava, finds how far the nearest lava is from the cell the driller lands on
+ * below the spawn, and floods the map from the spawn to find the fuel needed to reach every cell.
+ * A map is unwinnable when no ore can be reached with the starting fuel.
+ *
+ * The flood is Dijkstra's algorithm on a binary heap of packed longs. It follows the move rules on a map that does not
+ * change: digging down, left and right costs digging fuel, moving up is only possible into open cells and costs flying fuel,
+ * and boulders and lava are never entered. Falling blocks, flowing lava and falls are left out, and every reachable ore is
+ * counted as if one trip could dig them all, so the reachable ores and value are upper bounds.
+ *
+ * Maps are analyzed in parallel on a fork-join pool. Every worker counts into a Tally of its own, with its own histograms
+ * and flood buffers, and the tallies are merged once all maps are done, so analyzing a map shares nothing and allocates
+ * only the generated grid. The result is a table of percentiles per metric, the mean of a 0 or 1 metric is its share of the maps.
+ *
+ * Usage: java MapAnalyzer maps=1000000 seed=1 width=20 depth=13 soil=0.80 threads=8 out=map-report
+ * writes map-report.csv.
+ */
+public class MapAnalyzer {
+    public static final int SPAWN_X = 1; // Where Game starts the driller
+    public static final int SPAWN_Y = 1;
+    private static final int MOVE_COST = 1; // Fuel of one tick, in units of FUEL_CONSUMPTION
+    private static final int FLY_COST = (int) Math.round(MineSimulation.FUEL_CONSUMPTION_FLYING / MineSimulation.FUEL_CONSUMPTION);
+    private static final int DIG_COST = (int) Math.round(MineSimulation.FUEL_CONSUMPTION_DIGGING / MineSimulation.FUEL_CONSUMPTION);
+    private static final int BUDGET = (int) Math.round(MineSimulation.FUEL_LEVEL / MineSimulation.FUEL_CONSUMPTION);
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int LAVA_NEAR = 2; // Lava this close to the landing cell can be dug into by the first moves
+    private static final byte[] ORES = {BlockGrid.DIAMOND, BlockGrid.EMERALD, BlockGrid.AMAZONITE, BlockGrid.PLATINUM};
+    private static final double[] PERCENTILES = {1, 5, 25, 50, 75, 95, 99};
+
+    // Metrics, in the order of the table
+    private static final String[] METRICS = {
+            "diamond", "emerald", "amazonite", "platinum", "lava", "lava_distance", "lava_near_spawn",
+            "fuel_to_first_ore", "reachable_ores", "reachable_value", "no_ore_reachable", "unwinnable"
+    };
+    private static final int LAVA = 4;
+    private static final int LAVA_DISTANCE = 5;
+    private static final int LAVA_NEAR_SPAWN = 6;
+    private static final int FUEL_TO_FIRST_ORE = 7;
+    private static final int REACHABLE_ORES = 8;
+    private static final int REACHABLE_VALUE = 9;
+    private static final int NO_ORE_REACHABLE = 10;
+    private static final int UNWINNABLE = 11;
+
+    private final int maps;
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final GridInitializer initializer;
+
+    /**
+     * Counts of one worker, merged into one tally at the end.
+     */
+    private static final class Tally {
+        private final LatencyHistogram[] histograms = new LatencyHistogram[METRICS.length];
+        private final long[] sums = new long[METRICS.length];
+        private final int[] ores = new int[ORES.length]; // Ores of the current map, by type
+        private final int[] costs; // Fuel to reach every cell of the current map
+        private long[] heap; // Cells to visit, packed as (cost << 32) | cell
+
+        private Tally(int cells) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+            costs = new int[cells];
+            heap = new long[4 * cells + 1]; // Every cell is pushed at most once from each side
+        }
+
+        private void record(int metric, long value) {
+            histograms[metric].record(value);
+            sums[metric] += value;
+        }
+
+        private void merge(Tally other) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i].add(other.histograms[i]);
+                sums[i] += other.sums[i];
+            }
+        }
+    }
+
+    /**
+     * Constructor for MapAnalyzer.
+     * @param maps The number of maps to analyze.
+     * @param seed The seed of the first map, map i uses seed + i.
+     * @param width The width of the maps in blocks.
+     * @param height The height of the maps in blocks.
+     * @param soilShare The share of the randomized cells that are soil, from 0 to 1.
+     * @throws IllegalArgumentException If the soil share is not between 0 and 1.
+     */
+    public MapAnalyzer(int maps, long seed, int width, int height, double soilShare) {
+        this.maps = maps;
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.initializer = new GridInitializer(height, width, soilShare);
+    }
+
+    /**
+     * Analyzes every map on a pool with the given number of threads.
+     * @param threads The number of worker threads.
+     * @return The merged counts of every map.
+     */
+    private Tally run(int threads) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> IntStream.range(0, maps).parallel()
+                    .collect(() -> new Tally(width * height), this::analyze, Tally::merge)).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Generates one map and counts its metrics.
+     * @param tally The counts of the worker.
+     * @param index The index of the map.
+     */
+    private void analyze(Tally tally, int index) {
+        BlockGrid grid = initializer.initializeGrid(seed + index);
+        byte[] cells = grid.getCells();
+        int landingY = SPAWN_Y;
+        while (landingY + 1 < height && grid.isOpen(SPAWN_X, landingY + 1)) {
+            landingY++; // The driller falls until it stands on a block
+        }
+        int[] ores = tally.ores;
+        Arrays.fill(ores, 0);
+        int lava = 0;
+        int lavaDistance = UNREACHED;
+        for (int i = 0; i < cells.length; i++) {
+            byte type = cells[i];
+            if (type == BlockGrid.LAVA) {
+                lava++;
+                lavaDistance = Math.min(lavaDistance, Math.abs(i % width - SPAWN_X) + Math.abs(i / width - landingY));
+            }
+            for (int ore = 0; ore < ORES.length; ore++) {
+                if (type == ORES[ore]) ores[ore]++;
+            }
+        }
+        for (int ore = 0; ore < ORES.length; ore++) {
+            tally.record(ore, ores[ore]);
+        }
+        tally.record(LAVA, lava);
+        if (lavaDistance != UNREACHED) {
+            tally.record(LAVA_DISTANCE, lavaDistance);
+        }
+        tally.record(LAVA_NEAR_SPAWN, lavaDistance <= LAVA_NEAR ? 1 : 0);
+
+        flood(cells, tally);
+        int[] costs = tally.costs;
+        int firstOre = UNREACHED;
+        int reachableOres = 0;
+        long reachableValue = 0;
+        for (int i = 0; i < cells.length; i++) {
+            Block block = BlockGrid.blockOf(cells[i]);
+            if (block.getValue() == 0 || costs[i] == UNREACHED) continue;
+            firstOre = Math.min(firstOre, costs[i]);
+            if (costs[i] < BUDGET) { // Fuel must be left after the dig, at 0 the game is over
+                reachableOres++;
+                reachableValue += block.getValue();
+            }
+        }
+        if (firstOre != UNREACHED) {
+            tally.record(FUEL_TO_FIRST_ORE, (long) Math.ceil(firstOre * MineSimulation.FUEL_CONSUMPTION));
+        }
+        tally.record(REACHABLE_ORES, reachableOres);
+        tally.record(REACHABLE_VALUE, reachableValue);
+        tally.record(NO_ORE_REACHABLE, firstOre == UNREACHED ? 1 : 0);
+        tally.record(UNWINNABLE, reachableOres == 0 ? 1 : 0);
+    }
+
+    /**
+     * Fills the tally's costs with the fuel needed to reach every cell from the spawn, UNREACHED for cells that cannot be.
+     */
+    private void flood(byte[] cells, Tally tally) {
+        int[] costs = tally.costs;
+        long[] heap = tally.heap;
+        Arrays.fill(costs, UNREACHED);
+        int start = SPAWN_Y * width + SPAWN_X;
+        costs[start] = 0;
+        int size = 0;
+        heap[size++] = start;
+        while (size > 0) {
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+            int cost = (int) (top >>> 32);
+            int cell = (int) top;
+            if (cost > costs[cell]) continue; // Reached more cheaply since it was pushed
+            int x = cell % width;
+            int y = cell / width;
+            if (y > 0 && isOpen(cells[cell - width])) {
+                size = relax(heap, size, costs, cell - width, cost + FLY_COST);
+            }
+            if (y + 1 < height) {
+                size = relax(heap, size, costs, cell + width, cost + enterCost(cells[cell + width]));
+            }
+            if (x > 0) {
+                size = relax(heap, size, costs, cell - 1, cost + enterCost(cells[cell - 1]));
+            }
+            if (x + 1 < width) {
+                size = relax(heap, size, costs, cell + 1, cost + enterCost(cells[cell + 1]));
+            }
+        }
+    }
+
+    /**
+     * Returns the fuel needed to move down or sideways into a cell, or a negative number if it cannot be entered.
+     */
+    private static int enterCost(byte type) {
+        if (type == BlockGrid.BOULDER || type == BlockGrid.LAVA) return Integer.MIN_VALUE;
+        return isOpen(type) ? MOVE_COST : DIG_COST + MOVE_COST;
+    }
+
+    private static boolean isOpen(byte type) {
+        return type == BlockGrid.SKY || type == BlockGrid.EMPTY;
+    }
+
+    /**
+     * Lowers the cost of a cell and pushes it if the new cost is lower.
+     * @return The new size of the heap.
+     */
+    private static int relax(long[] heap, int size, int[] costs, int cell, int cost) {
+        if (cost < 0 || cost >= costs[cell]) return size; // Cannot be entered, or already cheaper
+        costs[cell] = cost;
+        heap[size] = ((long) cost << 32) | cell;
+        siftUp(heap, size);
+        return size + 1;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= entry) break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = entry;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) return;
+        long entry = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (entry <= heap[child]) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+
+    /**
+     * Formats the merged counts as a table with one row per metric.
+     * @param tally The merged counts.
+     * @param separator The text between two columns.
+     * @return The table, with a header row.
+     */
+    private static String table(Tally tally, String separator) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-18s", "metric")).append(separator).append(String.format(Locale.ROOT, "%12s", "mean"));
+        for (double percentile : PERCENTILES) {
+            table.append(separator).append(String.format(Locale.ROOT, "%8s", "p" + (int) percentile));
+        }
+        table.append(separator).append(String.format(Locale.ROOT, "%8s", "max")).append('\n');
+        for (int metric = 0; metric < METRICS.length; metric++) {
+            LatencyHistogram histogram = tally.histograms[metric];
+            double mean = histogram.getCount() == 0 ? 0 : (double) tally.sums[metric] / histogram.getCount();
+            table.append(String.format(Locale.ROOT, "%-18s", METRICS[metric])).append(separator).append(String.format(Locale.ROOT, "%12.4f", mean));
+            for (double percentile : PERCENTILES) {
+                table.append(separator).append(String.format(Locale.ROOT, "%8d", histogram.getPercentile(percentile)));
+            }
+            table.append(separator).append(String.format(Locale.ROOT, "%8d", histogram.getMax())).append('\n');
+        }
+        return table.toString();
+    }
+
+    /**
+     * Analyzes maps from the command line, every argument is a key=value pair.
+     */
+    public static void main(String[] args) throws Exception {
+        int maps = 1_000_000;
+        long seed = 1;
+        int width = Main.GRID_WIDTH;
+        int depth = Main.GRID_HEIGHT;
+        double soil = GridInitializer.DEFAULT_SOIL_SHARE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = "map-report";
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "maps": maps = Integer.parseInt(pair[1]); break;
+                case "seed": seed = Long.parseLong(pair[1]); break;
+                case "width": width = Integer.parseInt(pair[1]); break;
+                case "depth": depth = Integer.parseInt(pair[1]); break;
+                case "soil": soil = Double.parseDouble(pair[1]); break;
+                case "threads": threads = Integer.parseInt(pair[1]); break;
+                case "out": out = pair[1]; break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        MapAnalyzer analyzer = new MapAnalyzer(maps, seed, width, depth, soil);
+        long start = System.nanoTime();
+        Tally tally = analyzer.run(threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(table(tally, " "));
+        writeCsv(Paths.get(out + ".csv"), tally);
+        System.out.printf(Locale.ROOT, "%d maps on %d threads in %.2f s (%.0f maps/s)%n", maps, threads, seconds, maps / seconds);
+    }
+
+    /**
+     * Writes the table as CSV.
+     */
+    private static void writeCsv(Path path, Tally tally) throws IOException {
+        Files.writeString(path, table(tally, ",").replace(" ", ""));
+    }
+}
@@ -0,0 +1,223 @@
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.text.Text;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Metrics measures how the game runs while it is played.
+ * The game loop reports how long every frame callback and every tick took into two latency histograms,
+ * and the simulation counts the dug cells. Once a second the histograms are turned into one sample with their percentiles,
+ * the number of nodes in the scene, the digs per second and the bytes the JavaFX thread allocated per second, then reset.
+ *
+ * The samples of the last hour are kept in a fixed table, shown in an overlay that can be turned on and off
+ * and written to a CSV file. Between two samples the cost is two clock reads per frame and per tick, so it is always on.
+ */
+public class Metrics {
+    private static final long SAMPLE_PERIOD = 1_000_000_000L; // Nanoseconds between two samples
+    private static final int SAMPLE_CAPACITY = 3600; // Samples kept, older ones are overwritten
+    private static final String CSV_HEADER = "time_s,frames,frame_p50_us,frame_p99_us,frame_p999_us,frame_max_us,"
+            + "ticks,tick_p50_us,tick_p99_us,tick_max_us,nodes,digs_per_s,alloc_kb_per_s";
+
+    // Columns of a sample
+    private static final int TIME = 0;
+    private static final int FRAMES = 1;
+    private static final int FRAME_P50 = 2;
+    private static final int FRAME_P99 = 3;
+    private static final int FRAME_P999 = 4;
+    private static final int FRAME_MAX = 5;
+    private static final int TICKS = 6;
+    private static final int TICK_P50 = 7;
+    private static final int TICK_P99 = 8;
+    private static final int TICK_MAX = 9;
+    private static final int NODES = 10;
+    private static final int DIGS = 11;
+    private static final int ALLOCATED = 12;
+    private static final int COLUMNS = 13;
+
+    private final Parent root;
+    private final MineSimulation simulation;
+    private final Text overlay = new Text();
+    private final LatencyHistogram frames = new LatencyHistogram();
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final com.sun.management.ThreadMXBean threads; // Null if the JVM cannot count allocated bytes
+    private final ArrayDeque<Node> pending = new ArrayDeque<>(); // Reused while counting the nodes
+    private final long[][] samples = new long[SAMPLE_CAPACITY][COLUMNS];
+    private int sampleCount; // Samples taken so far, the newest is at (sampleCount - 1) % SAMPLE_CAPACITY
+    private long start = -1; // Time of the first sample period
+    private long periodStart;
+    private long allocatedAtStart;
+    private long digsAtStart;
+
+    /**
+     * Constructor for Metrics.
+     * @param root The node whose scene graph is counted.
+     * @param simulation The simulation whose digs are counted.
+     */
+    public Metrics(Parent root, MineSimulation simulation) {
+        this.root = root;
+        this.simulation = simulation;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+        overlay.setX(Main.GRID_WIDTH * Main.BLOCK_SIZE - 250);
+        overlay.setY(20);
+        overlay.setStyle("-fx-font-family: monospace; -fx-font-size: 12;");
+        overlay.setVisible(false);
+    }
+
+    /**
+     * Counts how long one frame callback of the game loop took.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void recordFrame(long nanos) {
+        frames.record(nanos);
+    }
+
+    /**
+     * Counts how long one tick of the game loop took, with every handler and listener it ran.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void recordTick(long nanos) {
+        ticks.record(nanos);
+    }
+
+    /**
+     * Takes a sample when a sample period has passed, called once per frame on the JavaFX thread.
+     * @param now The current time in nanoseconds.
+     */
+    public void sample(long now) {
+        if (start < 0) {
+            start = now;
+            startPeriod(now);
+            return;
+        }
+        long elapsed = now - periodStart;
+        if (elapsed < SAMPLE_PERIOD) return;
+        long allocated = allocatedBytes();
+        long[] row = samples[sampleCount % SAMPLE_CAPACITY];
+        row[TIME] = (now - start) / 1_000_000; // Milliseconds since the first period
+        row[FRAMES] = frames.getCount();
+        row[FRAME_P50] = frames.getPercentile(50);
+        row[FRAME_P99] = frames.getPercentile(99);
+        row[FRAME_P999] = frames.getPercentile(99.9);
+        row[FRAME_MAX] = frames.getMax();
+        row[TICKS] = ticks.getCount();
+        row[TICK_P50] = ticks.getPercentile(50);
+        row[TICK_P99] = ticks.getPercentile(99);
+        row[TICK_MAX] = ticks.getMax();
+        row[NODES] = countNodes();
+        row[DIGS] = (simulation.getDigs() - digsAtStart) * SAMPLE_PERIOD / elapsed;
+        row[ALLOCATED] = allocated < 0 ? -1 : (allocated - allocatedAtStart) * SAMPLE_PERIOD / elapsed;
+        sampleCount++;
+        if (overlay.isVisible()) {
+            showSample(row);
+        }
+        startPeriod(now);
+    }
+
+    /**
+     * Resets the counters for a new sample period.
+     */
+    private void startPeriod(long now) {
+        periodStart = now;
+        allocatedAtStart = allocatedBytes();
+        digsAtStart = simulation.getDigs();
+        frames.reset();
+        ticks.reset();
+    }
+
+    /**
+     * Returns the bytes the current thread allocated since it started, or -1 if the JVM cannot tell.
+     */
+    private long allocatedBytes() {
+        return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts the nodes in the scene graph under the root, the root included.
+     */
+    private int countNodes() {
+        int count = 0;
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            count++;
+            if (node instanceof Parent) {
+                for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                    pending.push(child);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Puts a sample on the overlay.
+     */
+    private void showSample(long[] row) {
+        overlay.setText(String.format(Locale.ROOT,
+                "fps %d  nodes %d%nframe p50 %.2f p99 %.2f max %.2f ms%ntick p50 %.3f p99 %.3f max %.3f ms%ndigs/s %d  alloc %s",
+                row[FRAMES], row[NODES],
+                row[FRAME_P50] / 1e6, row[FRAME_P99] / 1e6, row[FRAME_MAX] / 1e6,
+                row[TICK_P50] / 1e6, row[TICK_P99] / 1e6, row[TICK_MAX] / 1e6,
+                row[DIGS], row[ALLOCATED] < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f MB/s", row[ALLOCATED] / 1e6)));
+    }
+
+    /**
+     * Shows or hides the overlay, it is filled in from the last sample right away.
+     */
+    public void toggleOverlay() {
+        overlay.setVisible(!overlay.isVisible());
+        if (overlay.isVisible()) {
+            overlay.toFront();
+            if (sampleCount > 0) {
+                showSample(samples[(sampleCount - 1) % SAMPLE_CAPACITY]);
+            } else {
+                overlay.setText("Measuring...");
+            }
+        }
+    }
+
+    /**
+     * Returns the overlay text to add to the scene.
+     */
+    public Text getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns the number of samples taken so far, including those that were overwritten.
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Writes the kept samples to a CSV file, oldest first, one row per second.
+     * @param path The file to write.
+     */
+    public void writeCsv(Path path) throws IOException {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (int i = Math.max(0, sampleCount - SAMPLE_CAPACITY); i < sampleCount; i++) {
+            long[] row = samples[i % SAMPLE_CAPACITY];
+            csv.append(String.format(Locale.ROOT, "%.3f", row[TIME] / 1e3));
+            csv.append(',').append(row[FRAMES]);
+            csv.append(',').append(row[FRAME_P50] / 1000).append(',').append(row[FRAME_P99] / 1000);
+            csv.append(',').append(row[FRAME_P999] / 1000).append(',').append(row[FRAME_MAX] / 1000);
+            csv.append(',').append(row[TICKS]);
+            csv.append(',').append(row[TICK_P50] / 1000).append(',').append(row[TICK_P99] / 1000).append(',').append(row[TICK_MAX] / 1000);
+            csv.append(',').append(row[NODES]).append(',').append(row[DIGS]);
+            csv.append(',').append(row[ALLOCATED] < 0 ? -1 : row[ALLOCATED] / 1024).append('\n');
+        }
+        Files.writeString(path, csv);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * MineGrid is implemented by the grid backends that hold the block type code of every cell.
+ * The type codes and the shared Block flyweights are defined in BlockGrid.
+ */
+public interface MineGrid {
+    /**
+     * Getter for the width of the grid.
+     * @return The width of the grid in blocks.
+     */
+    int getWidth();
+
+    /**
+     * Getter for the height of the grid.
+     * @return The height of the grid in blocks.
+     */
+    int getHeight();
+
+    /**
+     * Returns the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The type code of the block.
+     */
+    byte getType(int x, int y);
+
+    /**
+     * Sets the type code of the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @param type The new type code of the block.
+     */
+    void setType(int x, int y, byte type);
+
+    /**
+     * Returns the block at the given coordinates.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return The shared block instance for the cell's type.
+     */
+    default Block get(int x, int y) {
+        return BlockGrid.blockOf(getType(x, y));
+    }
+
+    /**
+     * Checks if the driller can move through the block at the given coordinates without digging.
+     * @param x The x coordinate of the block.
+     * @param y The y coordinate of the block.
+     * @return True if the block is sky or empty.
+     */
+    default boolean isOpen(int x, int y) {
+        byte type = getType(x, y);
+        return type == BlockGrid.SKY || type == BlockGrid.EMPTY;
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MineServer runs one mine that many drillers dig in at once, with its tick thread as the only owner of the world.
+ * Clients connect over TCP, on the loopback address by default, and each gets a driller of its own.
+ * Session threads only put moves on the sessions' CommandQueues and write the messages they are handed,
+ * so the world is never touched by more than one thread and needs no locks.
+ *
+ * The tick thread steps a headless GameLoop at a fixed rate. A tick lets new drillers join, steps the world and the drillers'
+ * gravity and fuel when they are due, plays at most movesPerTick queued moves of every driller in the order they joined,
+ * and sends one WorldDelta to every client. A tick that starts more than MAX_LATE_TICKS late skips the missed ticks
+ * instead of running them back to back. Once a second the server prints the tick time percentiles, how late ticks started,
+ * and the backlog of moves and messages.
+ *
+ * Usage: java MineServer port=7777 width=200 depth=100 seed=1 tickRate=60 movesPerTick=1 bots=300 policy=digger moveTicks=6 seconds=60
+ * bots starts that many BotClients in the same process, seconds stops the server after that long (0 runs until killed).
+ */
+public class MineServer {
+    private static final long REPORT_PERIOD = 1_000_000_000L; // Nanoseconds between two printed reports
+    private static final int MAX_LATE_TICKS = 5; // Ticks a tick may start late before the missed ones are skipped
+    private static final int ACCEPT_BACKLOG = 1024; // Connections the system holds until they are accepted, a swarm of bots connects at once
+
+    private final MineWorld world;
+    private final GameLoop loop;
+    private final int movesPerTick;
+    private final ServerSocketChannel server;
+    private final ExecutorService pool; // Runs the acceptor and the sessions' readers and writers
+    private final ConcurrentLinkedQueue<ServerSession> joining = new ConcurrentLinkedQueue<>(); // Accepted, not in the world yet
+    private volatile boolean running = true;
+
+    // Only used by the tick thread
+    private final List<ServerSession> sessions = new ArrayList<>();
+    private final WorldDelta delta = new WorldDelta(); // Changes of the current tick
+    private final WorldDelta roster = new WorldDelta(); // Drillers sent to a client that joins
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private final LatencyHistogram lateness = new LatencyHistogram();
+    private long skippedTicks;
+    private int movesPlayed;
+    private int commandBacklog;
+    private int outboxBacklog;
+    private int maxCommandBacklog;
+    private int maxOutboxBacklog;
+
+    /**
+     * Constructor for MineServer, binds the port but does not run anything yet.
+     * @param grid The grid of the mine.
+     * @param address The address to listen on.
+     * @param tickRate Ticks per second.
+     * @param movesPerTick Queued moves of each driller played at most in one tick.
+     */
+    public MineServer(MineGrid grid, InetSocketAddress address, int tickRate, int movesPerTick) throws IOException {
+        this.world = new MineWorld(grid);
+        this.loop = new GameLoop(tickRate, MAX_LATE_TICKS);
+        this.movesPerTick = movesPerTick;
+        this.server = ServerSocketChannel.open().bind(address, ACCEPT_BACKLOG);
+        this.pool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "mine-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        world.addListener(delta);
+        // Same order as a single player game: gravity, fuel drain, then moves
+        loop.register(this::admit, loop.getTickNanos());
+        loop.register(tick -> applyGravity(), MineSimulation.GRAVITY_DELAY);
+        loop.register(tick -> drainFuel(), MineSimulation.FUEL_DELAY);
+        loop.register(tick -> playMoves(), loop.getTickNanos());
+        loop.register(this::broadcast, loop.getTickNanos());
+    }
+
+    /**
+     * Accepts clients until the server stops, on a pool thread.
+     */
+    private void accept() {
+        int number = 0;
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                ServerSession session = new ServerSession(number++, channel);
+                session.start(pool);
+                joining.add(session);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Could not accept a client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts the drillers of new clients into the world and sends each the whole mine.
+     */
+    private void admit(long tick) {
+        ServerSession session;
+        while ((session = joining.poll()) != null) {
+            int number = session.getNumber();
+            int startX = 1 + number * 7 % Math.max(world.getGrid().getWidth() - 2, 1); // Spread over the surface
+            session.join(new MineSimulation(world, startX, 1));
+            for (ServerSession other : sessions) {
+                roster.drillerChanged(other.getNumber(), other.getSimulation(), WorldDelta.stateOf(other.getSimulation()));
+            }
+            session.send(roster.welcome(number, world.getGrid(), tick));
+            sessions.add(session);
+        }
+    }
+
+    /**
+     * Lets blocks fall and lava flow once for the whole world, then lets every driller fall.
+     */
+    private void applyGravity() {
+        world.step();
+        for (int i = 0; i < sessions.size(); i++) {
+            sessions.get(i).getSimulation().applyGravity();
+        }
+    }
+
+    private void drainFuel() {
+        for (int i = 0; i < sessions.size(); i++) {
+            sessions.get(i).getSimulation().drainFuel();
+        }
+    }
+
+    /**
+     * Plays the queued moves of every driller, at most movesPerTick each, so a busy client cannot starve the others.
+     */
+    private void playMoves() {
+        movesPlayed = 0;
+        for (int i = 0; i < sessions.size(); i++) {
+            ServerSession session = sessions.get(i);
+            for (int j = 0; j < movesPerTick; j++) {
+                MineSimulation.Direction direction = session.getCommands().poll();
+                if (direction == null) break;
+                session.getSimulation().move(direction);
+                movesPlayed++;
+            }
+        }
+    }
+
+    /**
+     * Takes the drillers of disconnected clients out of the world and sends the changes of the tick to every client.
+     * A message is sent every tick, even an empty one, so clients can count ticks.
+     */
+    private void broadcast(long tick) {
+        GameEvents.ServerTick event = new GameEvents.ServerTick();
+        event.begin();
+        commandBacklog = 0;
+        outboxBacklog = 0;
+        for (int i = 0; i < sessions.size(); i++) {
+            ServerSession session = sessions.get(i);
+            MineSimulation simulation = session.getSimulation();
+            if (session.isClosed()) {
+                world.removeDriller(simulation);
+                delta.drillerChanged(session.getNumber(), simulation, WorldDelta.LEFT);
+                sessions.remove(i--);
+                continue;
+            }
+            if (session.changedSinceSent()) {
+                delta.drillerChanged(session.getNumber(), simulation, WorldDelta.stateOf(simulation));
+            }
+            commandBacklog += session.getCommands().size();
+            outboxBacklog = Math.max(outboxBacklog, session.getOutboxSize());
+        }
+        ByteBuffer message = delta.finish(tick);
+        for (int i = 0; i < sessions.size(); i++) {
+            sessions.get(i).send(message);
+        }
+        maxCommandBacklog = Math.max(maxCommandBacklog, commandBacklog);
+        maxOutboxBacklog = Math.max(maxOutboxBacklog, outboxBacklog);
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.drillers = sessions.size();
+            event.moves = movesPlayed;
+            event.messageSize = message.remaining();
+            event.commandBacklog = commandBacklog;
+            event.outboxBacklog = outboxBacklog;
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs ticks at the fixed rate until stop is called, on the calling thread.
+     */
+    public void run() {
+        pool.execute(this::accept);
+        long tickNanos = loop.getTickNanos();
+        long next = System.nanoTime();
+        long nextReport = next + REPORT_PERIOD;
+        while (running) {
+            long start = System.nanoTime();
+            long late = start - next;
+            if (late > MAX_LATE_TICKS * tickNanos) { // Too far behind, skip the missed ticks instead of rushing them
+                skippedTicks += late / tickNanos;
+                next = start;
+                late = 0;
+            }
+            lateness.record(Math.max(late, 0));
+            loop.step();
+            long end = System.nanoTime();
+            tickTimes.record(end - start);
+            next += tickNanos;
+            if (end >= nextReport) {
+                System.out.println(report());
+                nextReport += REPORT_PERIOD;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        for (ServerSession session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Describes the ticks since the last report and starts measuring again.
+     * @return One line of text.
+     */
+    private String report() {
+        String line = String.format(Locale.ROOT,
+                "tick %d: %d drillers, tick p50 %.2f ms p99 %.2f ms max %.2f ms, late p99 %.2f ms, %d skipped, backlog %d moves (max %d), %d messages (max %d)",
+                loop.getTick(), sessions.size(), tickTimes.getPercentile(50) / 1e6, tickTimes.getPercentile(99) / 1e6,
+                tickTimes.getMax() / 1e6, lateness.getPercentile(99) / 1e6, skippedTicks, commandBacklog, maxCommandBacklog,
+                outboxBacklog, maxOutboxBacklog);
+        tickTimes.reset();
+        lateness.reset();
+        maxCommandBacklog = 0;
+        maxOutboxBacklog = 0;
+        return line;
+    }
+
+    /**
+     * Stops the server after its current tick, from any thread.
+     */
+    public void stop() {
+        running = false;
+        try {
+            server.close(); // Wakes the acceptor
+        } catch (IOException e) {
+            // Closed anyway
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on, useful when it was bound to port 0.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Runs a server from the command line, every argument is a key=value pair.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 7777;
+        int width = 200;
+        int depth = 100;
+        long seed = 1;
+        int tickRate = GameLoop.DEFAULT_TICK_RATE;
+        int movesPerTick = 1;
+        int bots = 0;
+        String policy = "digger";
+        int moveTicks = 6;
+        long seconds = 0;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "port": port = Integer.parseInt(pair[1]); break;
+                case "width": width = Integer.parseInt(pair[1]); break;
+                case "depth": depth = Integer.parseInt(pair[1]); break;
+                case "seed": seed = Long.parseLong(pair[1]); break;
+                case "tickRate": tickRate = Integer.parseInt(pair[1]); break;
+                case "movesPerTick": movesPerTick = Integer.parseInt(pair[1]); break;
+                case "bots": bots = Integer.parseInt(pair[1]); break;
+                case "policy": policy = pair[1]; break;
+                case "moveTicks": moveTicks = Integer.parseInt(pair[1]); break;
+                case "seconds": seconds = Long.parseLong(pair[1]); break;
+                default: throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        MineServer server = new MineServer(new GridInitializer(depth, width).initializeGrid(seed), address, tickRate, movesPerTick);
+        List<BotClient> clients = BotClient.startBots(bots, new InetSocketAddress(address.getAddress(), server.getPort()),
+                BotPolicy.named(policy), moveTicks, seed);
+        if (seconds > 0) {
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "mine-server-timer");
+                thread.setDaemon(true);
+                return thread;
+            }).schedule(server::stop, seconds, TimeUnit.SECONDS);
+        }
+        server.run();
+        long games = 0;
+        long moves = 0;
+        for (BotClient client : clients) {
+            client.stop();
+            games += client.getGames();
+            moves += client.getMoves();
+        }
+        if (bots > 0) {
+            System.out.printf(Locale.ROOT, "%d bots played %d games with %d moves%n", bots, games, moves);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.Arrays;
+
+/**
+ * MineSimulation holds the rules of the game: moving and digging, fuel consumption, gravity, money and haul.
+ * It has no JavaFX dependency, so it runs the same with a window, in a bot, or on a machine without a display.
+ * It takes move commands and ticks and reports every change to its listeners.
+ *
+ * Falling blocks and flowing lava belong to the MineWorld the driller is in. A simulation made from a grid has a world
+ * of its own and steps it at the start of every gravity step. Simulations made from a shared world leave stepping it
+ * to whoever owns it, and their cell changes are told to the world's listeners.
+ */
+public class MineSimulation {
+    // Constants for fuel consumption and the periods of gravity and fuel drain
+    public static final double FUEL_CONSUMPTION = 0.25;
+    public static final double FUEL_CONSUMPTION_FLYING = 2;
+    public static final double FUEL_CONSUMPTION_DIGGING = 50;
+    public static final double FUEL_LEVEL = 1500;
+    public static final long GRAVITY_DELAY = 300_000_000L;
+    public static final long FUEL_DELAY = 300_000_000L;
+
+    /**
+     * The directions the driller can be moved in.
+     */
+    public enum Direction { UP, DOWN, LEFT, RIGHT }
+
+    /**
+     * The poses the driller is drawn in.
+     */
+    public enum Pose { FLYING_ON, FLYING_OFF, DOWN, LEFT, RIGHT }
+
+    /**
+     * The results of a move command.
+     */
+    public enum Outcome {
+        IGNORED, // The game is over, the driller is at the edge of the grid, or it ran out of fuel while digging
+        MOVED, // Moved into an open cell
+        DUG, // Dug a block and moved into its cell
+        BLOCKED, // Could not move, a boulder or a wall is in the way
+        LAVA // Touched lava, the game is over
+    }
+
+    /**
+     * The reasons the game can end.
+     */
+    public enum Cause { LAVA, FUEL, CRUSHED }
+
+    private static final SimulationListener[] NO_LISTENERS = new SimulationListener[0];
+
+    private final MineWorld world;
+    private final boolean ownWorld; // The world was made for this simulation, which steps it and shares its listeners
+    private final MineGrid grid;
+    private SimulationListener[] listeners = NO_LISTENERS;
+
+    // Driller's state
+    private int x;
+    private int y;
+    private double fuel = FUEL_LEVEL;
+    private boolean flying = false;
+    private Pose pose = Pose.FLYING_ON;
+
+    // Game state
+    private int money, haul;
+    private boolean gameOver = false;
+    private Cause cause;
+    private long tick;
+    private long digs; // Blocks dug so far
+
+    /**
+     * Constructor for MineSimulation, the driller mines alone in a world of its own.
+     * @param grid The grid the driller mines in.
+     * @param startX The x coordinate the driller starts at.
+     * @param startY The y coordinate the driller starts at.
+     */
+    public MineSimulation(MineGrid grid, int startX, int startY) {
+        this(new MineWorld(grid), startX, startY, true);
+    }
+
+    /**
+     * Constructor for MineSimulation, the driller mines in a world shared with other drillers.
+     * The owner of the world steps it, this simulation's gravity step only moves the driller.
+     * @param world The world the driller mines in.
+     * @param startX The x coordinate the driller starts at.
+     * @param startY The y coordinate the driller starts at.
+     */
+    public MineSimulation(MineWorld world, int startX, int startY) {
+        this(world, startX, startY, false);
+    }
+
+    private MineSimulation(MineWorld world, int startX, int startY, boolean ownWorld) {
+        this.world = world;
+        this.ownWorld = ownWorld;
+        this.grid = world.getGrid();
+        this.x = startX;
+        this.y = startY;
+        world.addDriller(this);
+    }
+
+    /**
+     * Registers a listener that is told about every state change.
+     * In a world of its own the listener is told about changed cells too, in a shared world only the world's listeners are.
+     * @param listener The listener to add.
+     */
+    public void addListener(SimulationListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        if (ownWorld) {
+            world.addListener(listener);
+        }
+    }
+
+    /**
+     * Puts the driller and the counters into the given state and starts the game again if it was over.
+     * Listeners are not told, whoever restores the state redraws what it needs.
+     * @param x The x coordinate of the driller's cell.
+     * @param y The y coordinate of the driller's cell.
+     * @param fuel The fuel level.
+     * @param flying The flying mode.
+     * @param money The money collected so far.
+     * @param haul The haul collected so far.
+     */
+    public void restore(int x, int y, double fuel, boolean flying, int money, int haul) {
+        this.x = x;
+        this.y = y;
+        this.fuel = fuel;
+        this.flying = flying;
+        this.money = money;
+        this.haul = haul;
+        this.pose = flying ? Pose.FLYING_ON : Pose.FLYING_OFF;
+        this.gameOver = false;
+        this.cause = null;
+    }
+
+    /**
+     * Starts a new game as if the simulation was just made from its grid, whose cells the caller has refilled.
+     * Lets a simulation be reused for many games without allocating. Listeners are not told.
+     * @param startX The x coordinate the driller starts at.
+     * @param startY The y coordinate the driller starts at.
+     * @throws IllegalStateException If the world is shared, only its owner can refill it.
+     */
+    public void reset(int startX, int startY) {
+        if (!ownWorld) throw new IllegalStateException("A shared world is reset by its owner");
+        world.reset();
+        this.x = startX;
+        this.y = startY;
+        this.fuel = FUEL_LEVEL;
+        this.flying = false;
+        this.pose = Pose.FLYING_ON;
+        this.money = 0;
+        this.haul = 0;
+        this.gameOver = false;
+        this.cause = null;
+        this.tick = 0;
+        this.digs = 0;
+    }
+
+    /**
+     * Moves the driller in the given direction.
+     * Every move is reported as a GameEvents.Move when the event is enabled in a flight recording.
+     * @param direction The direction to move in.
+     * @return The result of the move.
+     */
+    public Outcome move(Direction direction) {
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        double fuelBefore = fuel;
+        int fromX = x;
+        int fromY = y;
+        Outcome outcome;
+        switch (direction) {
+            case UP:
+                outcome = stepUp();
+                break;
+            case DOWN:
+                outcome = stepDown();
+                break;
+            case LEFT:
+                outcome = stepLeft();
+                break;
+            default:
+                outcome = stepRight();
+                break;
+        }
+        if ((x != fromX || y != fromY) && fromY > 0) {
+            world.activate(fromX, fromY - 1); // A block resting on the driller can fall now
+        }
+        if (event.shouldCommit()) {
+            event.direction = direction.name();
+            event.outcome = outcome.name();
+            event.fuelDelta = fuel - fuelBefore;
+            event.x = x;
+            event.y = y;
+            event.commit();
+        }
+        return outcome;
+    }
+
+    /**
+     * Advances the simulation by one tick, applying gravity and draining fuel once.
+     * Used when the simulation runs without a GameLoop, one tick is one GRAVITY_DELAY.
+     */
+    public void tick() {
+        tick++;
+        applyGravity();
+        drainFuel();
+    }
+
+    /**
+     * Steps a world of its own, then the driller will fall down one cell if there is no block below it and flying mode is off.
+     * @return True if the driller fell.
+     */
+    public boolean applyGravity() {
+        if (gameOver) return false;
+        if (ownWorld) {
+            world.step();
+        }
+        // If the game is over or the driller is flying, gravity off.
+        if (gameOver || flying) return false;
+        // If there is no block below the driller, fall down
+        if (y < grid.getHeight() - 1 && grid.isOpen(x, y + 1)) {
+            GameEvents.Move event = new GameEvents.Move();
+            event.begin();
+            if (y > 0) {
+                world.activate(x, y - 1); // A block resting on the driller falls after it
+            }
+            y++;
+            setPose(Pose.FLYING_OFF);
+            if (event.shouldCommit()) {
+                event.direction = Direction.DOWN.name();
+                event.outcome = "FALL";
+                event.x = x;
+                event.y = y;
+                event.commit();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the fuel used while idle or flying.
+     */
+    public void drainFuel() {
+        if (gameOver) return; // If the game is over fuel is not consumed anymore
+        setFuel(fuel - (flying ? FUEL_CONSUMPTION_FLYING : FUEL_CONSUMPTION));
+    }
+
+    /**
+     * Moves the driller up.
+     * @return The result of the move.
+     */
+    public Outcome moveUp() {
+        return move(Direction.UP);
+    }
+
+    /**
+     * Moves the driller down.
+     * @return The result of the move.
+     */
+    public Outcome moveDown() {
+        return move(Direction.DOWN);
+    }
+
+    /**
+     * Moves the driller left.
+     * @return The result of the move.
+     */
+    public Outcome moveLeft() {
+        return move(Direction.LEFT);
+    }
+
+    /**
+     * Moves the driller right.
+     * @return The result of the move.
+     */
+    public Outcome moveRight() {
+        return move(Direction.RIGHT);
+    }
+
+    /**
+     * Applies the rules of a move up.
+     */
+    private Outcome stepUp() {
+        if (gameOver) return Outcome.IGNORED; // If game is over game will not run at the background
+        setFlying(true); // Update flying status
+        if (y > 0) { // If the driller is not at the top of the grid
+            // If the block above the driller is sky or empty, move up
+            if (grid.isOpen(x, y - 1)) {
+                y--;
+                setPose(Pose.FLYING_ON);
+                return Outcome.MOVED;
+            }
+            // If the block above the driller is not sky or empty, prevent digging
+            setPose(Pose.FLYING_ON);
+            return Outcome.BLOCKED;
+        }
+        return Outcome.IGNORED;
+    }
+
+    /**
+     * Applies the rules of a move down.
+     */
+    private Outcome stepDown() {
+        if (gameOver) return Outcome.IGNORED; // If game is over game will not run at the background
+        setFlying(false); // Update flying status
+
+        if (y < grid.getHeight() - 1) { // If the driller is not at the bottom of the grid
+            byte blockType = grid.getType(x, y + 1); // Get the block below the driller
+            if (blockType == BlockGrid.BOULDER) { // If the block below the driller is boulder, prevent digging
+                setFuel(fuel - FUEL_CONSUMPTION_DIGGING);
+                setPose(Pose.DOWN);
+                return Outcome.BLOCKED;
+            }
+            else if (blockType == BlockGrid.LAVA) { // If the block below the driller is lava, the game is over
+                setPose(Pose.DOWN);
+                endGame(Cause.LAVA);
+                return Outcome.LAVA;
+            }
+            else if (!grid.isOpen(x, y + 1)) { // Dig
+                setFuel(fuel - FUEL_CONSUMPTION_DIGGING);
+                if (gameOver) return Outcome.IGNORED;
+                dig(x, y + 1, blockType);
+                y++;
+                setPose(Pose.DOWN);
+                return Outcome.DUG;
+            }
+        }
+        return Outcome.IGNORED;
+    }
+
+    /**
+     * Applies the rules of a move left.
+     */
+    private Outcome stepLeft() {
+        if (gameOver) return Outcome.IGNORED; // If game is over game will not run at the background
+        setFlying(false);
+        return x > 0 ? moveSideways(-1, Pose.LEFT) : Outcome.IGNORED; // Only if the driller is not at the left edge of the grid
+    }
+
+    /**
+     * Applies the rules of a move right.
+     */
+    private Outcome stepRight() {
+        if (gameOver) return Outcome.IGNORED; // If game is over game will not run at the background
+        setFlying(false);
+        return x < grid.getWidth() - 1 ? moveSideways(1, Pose.RIGHT) : Outcome.IGNORED; // Only if the driller is not at the right edge of the grid
+    }
+
+    /**
+     * Moves the driller one cell left or right, digging if needed.
+     * @param dx -1 to move left, 1 to move right.
+     * @param sidePose The pose of the driller facing that side.
+     * @return The result of the move.
+     */
+    private Outcome moveSideways(int dx, Pose sidePose) {
+        byte blockType = grid.getType(x + dx, y); // Get the block next to the driller
+        if (blockType == BlockGrid.BOULDER) { // If the block next to the driller is boulder, prevent digging
+            setFuel(fuel - FUEL_CONSUMPTION_DIGGING);
+            setPose(sidePose);
+            return Outcome.BLOCKED;
+        }
+        else if (blockType == BlockGrid.LAVA) { // If the block next to the driller is lava, the game is over
+            setPose(sidePose);
+            endGame(Cause.LAVA);
+            return Outcome.LAVA;
+        }
+        else if (grid.getType(x, y) == BlockGrid.EMPTY && grid.getType(x, y + 1) == BlockGrid.EMPTY && blockType != BlockGrid.EMPTY) { // Prevent drilling when flying
+            setPose(Pose.FLYING_ON);
+            return Outcome.BLOCKED;
+        }
+        else if (grid.isOpen(x + dx, y)) { // Don't dig it is in the air
+            x += dx;
+            // If the block below is not sky or empty it lands on it, otherwise it is flying
+            setPose(grid.isOpen(x, y + 1) ? Pose.FLYING_ON : sidePose);
+            return Outcome.MOVED;
+        }
+        else { // Dig
+            setFuel(fuel - FUEL_CONSUMPTION_DIGGING);
+            if (gameOver) return Outcome.IGNORED;
+            dig(x + dx, y, blockType);
+            x += dx;
+            setPose(sidePose);
+            return Outcome.DUG;
+        }
+    }
+
+    /**
+     * Empties a dug cell and collects its value if it is a valuable block.
+     * @param digX The x coordinate of the block.
+     * @param digY The y coordinate of the block.
+     * @param type The type code of the block that is dug.
+     */
+    private void dig(int digX, int digY, byte type) {
+        GameEvents.Dig event = new GameEvents.Dig();
+        event.begin();
+        world.setCell(digX, digY, type, BlockGrid.EMPTY);
+        digs++;
+        if (digY > 0) {
+            world.activate(digX, digY - 1); // The block above lost its support
+        }
+        // If the block is a valuable block update the money and haul according to their values
+        if (type == BlockGrid.DIAMOND || type == BlockGrid.EMERALD || type == BlockGrid.AMAZONITE || type == BlockGrid.PLATINUM) {
+            Block block = BlockGrid.blockOf(type);
+            money += block.getValue();
+            haul += block.getHaul();
+            for (SimulationListener listener : listeners) {
+                listener.moneyChanged(money, haul);
+            }
+        }
+        if (event.shouldCommit()) {
+            Block block = BlockGrid.blockOf(type);
+            event.block = block.getClass().getSimpleName();
+            event.value = block.getValue();
+            event.haul = block.getHaul();
+            event.x = digX;
+            event.y = digY;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sets the fuel level and ends the game if it ran out.
+     * @param fuel The new fuel level.
+     */
+    private void setFuel(double fuel) {
+        this.fuel = fuel;
+        for (SimulationListener listener : listeners) {
+            listener.fuelChanged(fuel);
+        }
+        if (fuel <= 0) {
+            endGame(Cause.FUEL);
+        }
+    }
+
+    /**
+     * Sets the flying mode, listeners are only told when it changes.
+     * @param flying The new flying mode.
+     */
+    private void setFlying(boolean flying) {
+        if (this.flying == flying) return;
+        this.flying = flying;
+        for (SimulationListener listener : listeners) {
+            listener.flyingChanged(flying);
+        }
+    }
+
+    /**
+     * Sets the pose of the driller and tells the listeners where it is.
+     * @param pose The new pose.
+     */
+    private void setPose(Pose pose) {
+        this.pose = pose;
+        for (SimulationListener listener : listeners) {
+            listener.drillerMoved(x, y, pose);
+        }
+    }
+
+    /**
+     * Ends the game, later moves and ticks are ignored. The world calls it when a block or lava reaches the driller.
+     * @param cause The reason the game ended.
+     */
+    void endGame(Cause cause) {
+        if (gameOver) return;
+        gameOver = true;
+        this.cause = cause;
+        for (SimulationListener listener : listeners) {
+            listener.gameOver(cause);
+        }
+    }
+
+    /**
+     * Getter for the grid.
+     * @return The grid the driller mines in.
+     */
+    public MineGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Getter for the world.
+     * @return The world the driller mines in.
+     */
+    public MineWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Returns the x coordinate of the driller's cell.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinate of the driller's cell.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the current fuel level.
+     */
+    public double getFuel() {
+        return fuel;
+    }
+
+    /**
+     * Returns the current flying state.
+     */
+    public boolean isFlying() {
+        return flying;
+    }
+
+    /**
+     * Returns the pose the driller is drawn in.
+     */
+    public Pose getPose() {
+        return pose;
+    }
+
+    /**
+     * Returns the money collected so far.
+     */
+    public int getMoney() {
+        return money;
+    }
+
+    /**
+     * Returns the haul collected so far.
+     */
+    public int getHaul() {
+        return haul;
+    }
+
+    /**
+     * Chooses how the lava flow finds the cells it flows into, the result is the same in both modes.
+     * @param mode FULL to sweep the whole grid every lava step, FRONTIER to only look at the edge of the lava.
+     */
+    public void setLavaMode(LavaFlow.Mode mode) {
+        world.setLavaMode(mode);
+    }
+
+    /**
+     * Returns the number of blocks dug so far.
+     */
+    public long getDigs() {
+        return digs;
+    }
+
+    /**
+     * Returns true once the game is over.
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Returns the reason the game ended, or null while it is running.
+     */
+    public Cause getCause() {
+        return cause;
+    }
+
+    /**
+     * Returns the number of ticks run with the tick method.
+     */
+    public long getTick() {
+        return tick;
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.Arrays;
+
+/**
+ * MineWorld holds what a mine does without a driller moving it: the grid, loose blocks falling into dug cells and lava flowing.
+ * A MineSimulation made from a grid has a world of its own and steps it in its gravity step. The drillers of a MineServer
+ * share one world that the server steps once per gravity step for all of them, so blocks fall and lava flows the same
+ * whichever driller dug the cell, and a falling block or lava ends the game of any driller it reaches.
+ *
+ * Gravity pulls boulders and ores into dug cells below them, one cell per step, and a falling block that reaches a driller
+ * crushes it. Only the cells next to a recent change are looked at, the cell above every dug or emptied cell and every block
+ * that just fell, so a step costs the number of changed cells and not the size of the grid.
+ * A block resting on a driller stays until the driller moves away.
+ * The active cells are not part of a snapshot, a block caught in the middle of a fall stays where it was when the mine is resumed.
+ *
+ * Every LAVA_STEPS steps lava flows one cell into the dug cells next to it, see LavaFlow,
+ * and lava that reaches a driller's cell ends its game like touching it does.
+ * The world stands still while none of its drillers is playing.
+ */
+public class MineWorld {
+    public static final int LAVA_STEPS = 4; // Steps between two steps of the lava flow
+
+    private static final SimulationListener[] NO_LISTENERS = new SimulationListener[0];
+    private static final MineSimulation[] NO_DRILLERS = new MineSimulation[0];
+    private static final boolean[] LOOSE = new boolean[BlockGrid.TYPE_COUNT]; // Types that fall into dug cells
+
+    static {
+        LOOSE[BlockGrid.BOULDER] = true;
+        LOOSE[BlockGrid.DIAMOND] = true;
+        LOOSE[BlockGrid.EMERALD] = true;
+        LOOSE[BlockGrid.AMAZONITE] = true;
+        LOOSE[BlockGrid.PLATINUM] = true;
+    }
+
+    private final MineGrid grid;
+    private final ActiveCells activeCells = new ActiveCells(); // Cells where a block may fall in the next step
+    private final LavaFlow lava; // Finds the dug cells lava flows into
+    private SimulationListener[] listeners = NO_LISTENERS;
+    private MineSimulation[] drillers = NO_DRILLERS;
+    private long steps; // Steps run so far, lava flows every LAVA_STEPS of them
+
+    /**
+     * Constructor for MineWorld.
+     * @param grid The grid of the mine.
+     */
+    public MineWorld(MineGrid grid) {
+        this.grid = grid;
+        this.lava = new LavaFlow(grid);
+    }
+
+    /**
+     * Registers a listener that is told about every changed cell, whichever driller or step changed it.
+     * @param listener The listener to add.
+     */
+    public void addListener(SimulationListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Adds a driller to the world, called by the MineSimulation constructor.
+     */
+    void addDriller(MineSimulation driller) {
+        drillers = Arrays.copyOf(drillers, drillers.length + 1);
+        drillers[drillers.length - 1] = driller;
+    }
+
+    /**
+     * Takes a driller out of the world, blocks and lava no longer look at its cell.
+     * @param driller The simulation of the driller.
+     */
+    public void removeDriller(MineSimulation driller) {
+        for (int i = 0; i < drillers.length; i++) {
+            if (drillers[i] != driller) continue;
+            MineSimulation[] rest = new MineSimulation[drillers.length - 1];
+            System.arraycopy(drillers, 0, rest, 0, i);
+            System.arraycopy(drillers, i + 1, rest, i, rest.length - i);
+            drillers = rest;
+            return;
+        }
+    }
+
+    /**
+     * Forgets the falling blocks and the lava's frontier, for a grid whose cells were refilled.
+     * The listeners are not told, whoever refilled the grid knows it changed.
+     */
+    public void reset() {
+        activeCells.clear();
+        lava.reset();
+        steps = 0;
+    }
+
+    /**
+     * Lets loose blocks fall one cell, and every LAVA_STEPS steps lets the lava flow.
+     * Does nothing while none of the drillers is playing.
+     */
+    public void step() {
+        if (!isPlaying()) return;
+        steps++;
+        if (!activeCells.isEmpty()) {
+            settleTerrain();
+        }
+        if (isPlaying() && steps % LAVA_STEPS == 0) {
+            flowLava();
+        }
+    }
+
+    /**
+     * Moves every loose block of the active cells that has a dug cell below it down by one cell.
+     * Cells are visited bottom row first, so a column of blocks falls together.
+     * A block that was already falling crushes the drillers in the cell below it.
+     */
+    private void settleTerrain() {
+        int count = activeCells.swap();
+        for (int i = 0; i < count && isPlaying(); i++) {
+            int cellX = activeCells.getX(i);
+            int cellY = activeCells.getY(i);
+            byte type = grid.getType(cellX, cellY);
+            if (!LOOSE[type] || cellY + 1 >= grid.getHeight() || grid.getType(cellX, cellY + 1) != BlockGrid.EMPTY) continue;
+            if (isOccupied(cellX, cellY + 1)) { // A driller is in the cell below
+                if (activeCells.isMoving(i)) {
+                    setCell(cellX, cellY, type, BlockGrid.EMPTY);
+                    setCell(cellX, cellY + 1, BlockGrid.EMPTY, type);
+                    endGames(cellX, cellY + 1, MineSimulation.Cause.CRUSHED);
+                }
+                continue; // Otherwise it rests on the driller, the driller's next move looks at it again
+            }
+            setCell(cellX, cellY, type, BlockGrid.EMPTY);
+            setCell(cellX, cellY + 1, BlockGrid.EMPTY, type);
+            activeCells.add(cellX, cellY + 1, true);
+            if (cellY > 0) {
+                activeCells.add(cellX, cellY - 1, false);
+            }
+        }
+    }
+
+    /**
+     * Turns the dug cells the lava flow found into lava, in row order.
+     * The game of every driller in one of them is over.
+     */
+    private void flowLava() {
+        GameEvents.LavaStep event = new GameEvents.LavaStep();
+        event.begin();
+        int count = lava.step();
+        for (int i = 0; i < count; i++) {
+            setCell(lava.getX(i), lava.getY(i), BlockGrid.EMPTY, BlockGrid.LAVA);
+        }
+        if (count > 0) {
+            for (MineSimulation driller : drillers) {
+                if (!driller.isGameOver() && grid.getType(driller.getX(), driller.getY()) == BlockGrid.LAVA) {
+                    driller.endGame(MineSimulation.Cause.LAVA);
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.mode = lava.getMode().name();
+            event.checked = lava.getChecked();
+            event.flooded = count;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns true if a driller that is still playing is in a cell.
+     */
+    private boolean isOccupied(int x, int y) {
+        for (MineSimulation driller : drillers) {
+            if (!driller.isGameOver() && driller.getX() == x && driller.getY() == y) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends the game of every driller that is still playing in a cell.
+     */
+    private void endGames(int x, int y, MineSimulation.Cause cause) {
+        for (MineSimulation driller : drillers) {
+            if (!driller.isGameOver() && driller.getX() == x && driller.getY() == y) {
+                driller.endGame(cause);
+            }
+        }
+    }
+
+    /**
+     * Changes the block of a cell and tells the listeners.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @param oldType The type code of the block in the cell.
+     * @param newType The type code of the new block.
+     */
+    void setCell(int x, int y, byte oldType, byte newType) {
+        grid.setType(x, y, newType);
+        if (newType == BlockGrid.EMPTY) {
+            lava.cellEmptied(x, y);
+        } else if (newType == BlockGrid.LAVA) {
+            lava.cellFlooded(x, y);
+        }
+        for (SimulationListener listener : listeners) {
+            listener.cellChanged(x, y, oldType, newType);
+        }
+    }
+
+    /**
+     * Looks at a cell in the next step, a block in it may have lost its support.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     */
+    void activate(int x, int y) {
+        activeCells.add(x, y, false);
+    }
+
+    /**
+     * Returns true while at least one of the drillers is playing.
+     */
+    public boolean isPlaying() {
+        for (MineSimulation driller : drillers) {
+            if (!driller.isGameOver()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Chooses how the lava flow finds the cells it flows into, the result is the same in both modes.
+     * @param mode FULL to sweep the whole grid every lava step, FRONTIER to only look at the edge of the lava.
+     */
+    public void setLavaMode(LavaFlow.Mode mode) {
+        lava.setMode(mode);
+    }
+
+    /**
+     * Getter for the grid.
+     * @return The grid of the mine.
+     */
+    public MineGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the number of drillers in the world, playing or not.
+     */
+    public int getDrillerCount() {
+        return drillers.length;
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.Arrays;
+
+/**
+ * OreIndex knows where the valuable blocks of a grid are without scanning the grid.
+ * Every ore type has one bitset per row, so the nearest ore of a type is found by scanning the words of the rows
+ * closest to a point. The value and haul of every cell are kept in two 2D Fenwick trees, so the total value or haul
+ * left in any rectangle is a prefix sum of O(log width * log height) steps.
+ * It is built once from a grid and kept up to date as a listener of the simulation, each dug cell is an O(log n) update.
+ */
+public class OreIndex implements SimulationListener {
+    public static final byte ANY_ORE = -1; // Matches every ore type in nearest and count
+    private static final byte[] ORE_TYPES = {BlockGrid.DIAMOND, BlockGrid.EMERALD, BlockGrid.AMAZONITE, BlockGrid.PLATINUM};
+    private static final int[] SLOT = new int[BlockGrid.TYPE_COUNT]; // Bitset slot of each type, 0 is any ore, -1 is not an ore
+
+    static {
+        Arrays.fill(SLOT, -1);
+        for (int i = 0; i < ORE_TYPES.length; i++) {
+            SLOT[ORE_TYPES[i]] = i + 1;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int words; // Longs in one row of a bitset
+    private final long[][] bits; // bits[slot][y * words + x / 64] is set when the cell holds an ore of the slot
+    private final int[][] rowCounts; // rowCounts[slot][y] is the number of ores of the slot in row y
+    private final int[] counts = new int[ORE_TYPES.length + 1];
+    private final long[] valueTree; // Fenwick tree of Block.getValue, indexed (y + 1) * (width + 1) + x + 1
+    private final long[] haulTree; // Fenwick tree of Block.getHaul
+
+    /**
+     * Constructor for OreIndex, indexes every cell of the grid.
+     * @param grid The grid to index.
+     */
+    public OreIndex(MineGrid grid) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.words = (width + 63) >> 6;
+        this.bits = new long[ORE_TYPES.length + 1][height * words];
+        this.rowCounts = new int[ORE_TYPES.length + 1][height];
+        this.valueTree = new long[(width + 1) * (height + 1)];
+        this.haulTree = new long[(width + 1) * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte type = grid.getType(x, y);
+                if (SLOT[type] < 0) continue;
+                setBit(SLOT[type], x, y);
+                setBit(0, x, y);
+                Block block = BlockGrid.blockOf(type);
+                valueTree[(y + 1) * (width + 1) + x + 1] = block.getValue();
+                haulTree[(y + 1) * (width + 1) + x + 1] = block.getHaul();
+            }
+        }
+        buildTree(valueTree);
+        buildTree(haulTree);
+    }
+
+    /**
+     * Turns an array of cell values into a 2D Fenwick tree in linear time, by pushing every entry to its parent in each dimension.
+     */
+    private void buildTree(long[] tree) {
+        for (int y = 1; y <= height; y++) {
+            for (int x = 1; x <= width; x++) {
+                int parentX = x + (x & -x);
+                if (parentX <= width) tree[y * (width + 1) + parentX] += tree[y * (width + 1) + x];
+            }
+        }
+        for (int y = 1; y <= height; y++) {
+            int parentY = y + (y & -y);
+            if (parentY > height) continue;
+            for (int x = 1; x <= width; x++) {
+                tree[parentY * (width + 1) + x] += tree[y * (width + 1) + x];
+            }
+        }
+    }
+
+    /**
+     * Updates the index when the simulation changes a cell.
+     */
+    @Override
+    public void cellChanged(int x, int y, byte oldType, byte newType) {
+        if (oldType == newType) return;
+        if (SLOT[oldType] >= 0) {
+            clearBit(SLOT[oldType], x, y);
+            clearBit(0, x, y);
+        }
+        if (SLOT[newType] >= 0) {
+            setBit(SLOT[newType], x, y);
+            setBit(0, x, y);
+        }
+        Block oldBlock = BlockGrid.blockOf(oldType);
+        Block newBlock = BlockGrid.blockOf(newType);
+        add(valueTree, x, y, newBlock.getValue() - oldBlock.getValue());
+        add(haulTree, x, y, newBlock.getHaul() - oldBlock.getHaul());
+    }
+
+    private void setBit(int slot, int x, int y) {
+        bits[slot][y * words + (x >> 6)] |= 1L << x;
+        rowCounts[slot][y]++;
+        counts[slot]++;
+    }
+
+    private void clearBit(int slot, int x, int y) {
+        bits[slot][y * words + (x >> 6)] &= ~(1L << x);
+        rowCounts[slot][y]--;
+        counts[slot]--;
+    }
+
+    private void add(long[] tree, int x, int y, long delta) {
+        if (delta == 0) return;
+        for (int i = y + 1; i <= height; i += i & -i) {
+            for (int j = x + 1; j <= width; j += j & -j) {
+                tree[i * (width + 1) + j] += delta;
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the cells with x below endX and y below endY.
+     */
+    private long prefix(long[] tree, int endX, int endY) {
+        long sum = 0;
+        for (int i = endY; i > 0; i -= i & -i) {
+            for (int j = endX; j > 0; j -= j & -j) {
+                sum += tree[i * (width + 1) + j];
+            }
+        }
+        return sum;
+    }
+
+    private long region(long[] tree, int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width);
+        y1 = Math.min(y1, height);
+        if (x0 >= x1 || y0 >= y1) return 0;
+        return prefix(tree, x1, y1) - prefix(tree, x0, y1) - prefix(tree, x1, y0) + prefix(tree, x0, y0);
+    }
+
+    /**
+     * Returns the total value of the ores left in a rectangle.
+     * @param x0 The first column of the rectangle.
+     * @param y0 The first row of the rectangle.
+     * @param x1 The column after the last one.
+     * @param y1 The row after the last one.
+     * @return The sum of Block.getValue over the rectangle.
+     */
+    public long regionValue(int x0, int y0, int x1, int y1) {
+        return region(valueTree, x0, y0, x1, y1);
+    }
+
+    /**
+     * Returns the total haul of the ores left in a rectangle.
+     * @param x0 The first column of the rectangle.
+     * @param y0 The first row of the rectangle.
+     * @param x1 The column after the last one.
+     * @param y1 The row after the last one.
+     * @return The sum of Block.getHaul over the rectangle.
+     */
+    public long regionHaul(int x0, int y0, int x1, int y1) {
+        return region(haulTree, x0, y0, x1, y1);
+    }
+
+    /**
+     * Returns the number of ores of a type left in the grid.
+     * @param type The ore type, or ANY_ORE.
+     * @return The number of ores, 0 for a type that is not an ore.
+     */
+    public int count(byte type) {
+        int slot = type == ANY_ORE ? 0 : SLOT[type];
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * Finds the ore of a type closest to a cell, by Manhattan distance.
+     * Rows are searched outwards from the cell and the search stops once a row is further away than the best ore.
+     * @param type The ore type, or ANY_ORE.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @return The ore's cell packed as ((long) y << 32) | x, or -1 if there is none.
+     * @throws IllegalArgumentException If the cell is outside the grid.
+     */
+    public long nearest(byte type, int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IllegalArgumentException("Cell (" + x + ", " + y + ") is outside the " + width + "x" + height + " grid");
+        }
+        int slot = type == ANY_ORE ? 0 : SLOT[type];
+        if (slot < 0 || counts[slot] == 0) return -1;
+        long best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int dy = 0; dy < bestDistance && (y - dy >= 0 || y + dy < height); dy++) {
+            for (int row = y - dy; row <= y + dy; row += Math.max(2 * dy, 1)) {
+                if (row < 0 || row >= height || rowCounts[slot][row] == 0) continue;
+                int column = nearestInRow(slot, row, x);
+                int distance = dy + Math.abs(column - x);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = ((long) row << 32) | column;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the column of the set bit closest to x in a row that has at least one.
+     */
+    private int nearestInRow(int slot, int row, int x) {
+        long[] slotBits = bits[slot];
+        int base = row * words;
+        int right = -1;
+        int word = Math.min(x, width - 1) >> 6;
+        long masked = slotBits[base + word] & (-1L << Math.min(x, width - 1)); // Bits at or right of x
+        while (true) {
+            if (masked != 0) {
+                right = (word << 6) + Long.numberOfTrailingZeros(masked);
+                break;
+            }
+            if (++word == words) break;
+            masked = slotBits[base + word];
+        }
+        int left = -1;
+        int start = Math.min(x, width) - 1;
+        if (start >= 0) {
+            word = start >> 6;
+            masked = slotBits[base + word] & (-1L >>> (63 - (start & 63))); // Bits left of x
+            while (true) {
+                if (masked != 0) {
+                    left = (word << 6) + 63 - Long.numberOfLeadingZeros(masked);
+                    break;
+                }
+                if (--word < 0) break;
+                masked = slotBits[base + word];
+            }
+        }
+        if (left < 0) return right;
+        if (right < 0) return left;
+        return x - left <= right - x ? left : right;
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ServerSession is one client of a MineServer and the driller it controls.
+ * A reader task turns the bytes the client sends into moves on the session's CommandQueue, which the tick thread polls
+ * without locks, and a writer task sends the messages the tick thread hands it. Both block on the socket on threads of the
+ * server's pool, so a slow client never holds up a tick. A client that falls OUTBOX_CAPACITY messages behind is dropped.
+ */
+public class ServerSession {
+    private static final MineSimulation.Direction[] DIRECTIONS = MineSimulation.Direction.values();
+    private static final int COMMAND_CAPACITY = 64; // Moves that can wait for the tick thread, more are dropped
+    private static final int OUTBOX_CAPACITY = 256; // Messages that can wait for the client
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0); // Tells the writer to stop
+
+    private final int number;
+    private final SocketChannel channel;
+    private final CommandQueue commands = new CommandQueue(COMMAND_CAPACITY);
+    private final BlockingQueue<ByteBuffer> outbox = new ArrayBlockingQueue<>(OUTBOX_CAPACITY);
+    private volatile boolean closed = false;
+
+    // Only used by the tick thread
+    private MineSimulation simulation;
+    private int sentX = -1; // -1 until the driller was sent once
+    private int sentY;
+    private MineSimulation.Pose sentPose;
+    private int sentMoney;
+    private byte sentState;
+
+    /**
+     * Constructor for ServerSession.
+     * @param number The number of the session's driller, unique on the server.
+     * @param channel The connected socket of the client.
+     */
+    public ServerSession(int number, SocketChannel channel) {
+        this.number = number;
+        this.channel = channel;
+    }
+
+    /**
+     * Starts reading moves from the client and writing messages to it.
+     * @param pool The pool the reader and writer run on.
+     */
+    public void start(ExecutorService pool) {
+        pool.execute(this::readCommands);
+        pool.execute(this::writeMessages);
+    }
+
+    /**
+     * Runs on a pool thread, queues every move the client sends until it disconnects.
+     */
+    private void readCommands() {
+        ByteBuffer bytes = ByteBuffer.allocate(256);
+        try {
+            while (channel.read(bytes) >= 0) {
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    int command = bytes.get();
+                    if (command < 0 || command >= DIRECTIONS.length) return; // Not a client of this server
+                    commands.offer(DIRECTIONS[command]); // A full queue drops the move, like a held key does
+                }
+                bytes.clear();
+            }
+        } catch (IOException e) {
+            // The client is gone
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Runs on a pool thread, writes every message handed over by the tick thread.
+     */
+    private void writeMessages() {
+        try {
+            while (true) {
+                ByteBuffer message = outbox.take();
+                if (message == CLOSE) return;
+                while (message.hasRemaining()) {
+                    channel.write(message);
+                }
+            }
+        } catch (IOException e) {
+            // The client is gone
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Hands a message to the writer, from the tick thread. Never waits, a client too far behind is closed instead.
+     * @param message The message, shared by every session and never changed.
+     */
+    public void send(ByteBuffer message) {
+        if (closed) return;
+        if (!outbox.offer(message.duplicate())) {
+            close();
+        }
+    }
+
+    /**
+     * Disconnects the client, from any thread. The tick thread takes the driller out of the world on its next tick.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            channel.close(); // Wakes the reader
+        } catch (IOException e) {
+            // Closed anyway
+        }
+        outbox.clear();
+        outbox.offer(CLOSE); // Wakes the writer
+    }
+
+    /**
+     * Puts the session's driller into the world, from the tick thread.
+     * @param simulation The driller's simulation.
+     */
+    public void join(MineSimulation simulation) {
+        this.simulation = simulation;
+    }
+
+    /**
+     * Returns true if the driller's cell, pose, money or state changed since the last call, from the tick thread.
+     */
+    public boolean changedSinceSent() {
+        byte state = WorldDelta.stateOf(simulation);
+        if (sentX == simulation.getX() && sentY == simulation.getY() && sentPose == simulation.getPose()
+                && sentMoney == simulation.getMoney() && sentState == state) {
+            return false;
+        }
+        sentX = simulation.getX();
+        sentY = simulation.getY();
+        sentPose = simulation.getPose();
+        sentMoney = simulation.getMoney();
+        sentState = state;
+        return true;
+    }
+
+    /**
+     * Returns the number of the session's driller.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the moves waiting for the tick thread.
+     */
+    public CommandQueue getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the driller's simulation, null before the tick thread let it join.
+     */
+    public MineSimulation getSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Returns the number of messages waiting to be written to the client.
+     */
+    public int getOutboxSize() {
+        return outbox.size();
+    }
+
+    /**
+     * Returns true once the client disconnected or was dropped.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
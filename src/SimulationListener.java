@@ -0,0 +1,53 @@
+/**
+ * SimulationListener receives the state changes of a MineSimulation.
+ * Every method does nothing by default, so a listener only overrides the events it needs.
+ */
+public interface SimulationListener {
+    /**
+     * Called after the block of a cell changed.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @param oldType The type code of the block before the change.
+     * @param newType The type code of the block after the change.
+     */
+    default void cellChanged(int x, int y, byte oldType, byte newType) {
+    }
+
+    /**
+     * Called after the driller moved or turned.
+     * @param x The x coordinate of the driller's cell.
+     * @param y The y coordinate of the driller's cell.
+     * @param pose The pose the driller should be drawn in.
+     */
+    default void drillerMoved(int x, int y, MineSimulation.Pose pose) {
+    }
+
+    /**
+     * Called after the fuel level changed.
+     * @param fuel The new fuel level.
+     */
+    default void fuelChanged(double fuel) {
+    }
+
+    /**
+     * Called after a valuable block was collected.
+     * @param money The new amount of money.
+     * @param haul The new haul.
+     */
+    default void moneyChanged(int money, int haul) {
+    }
+
+    /**
+     * Called after the flying mode was switched on or off.
+     * @param flying The new flying mode.
+     */
+    default void flyingChanged(boolean flying) {
+    }
+
+    /**
+     * Called once when the game ends.
+     * @param cause The reason the game ended.
+     */
+    default void gameOver(MineSimulation.Cause cause) {
+    }
+}
@@ -0,0 +1,146 @@
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpriteAtlas decodes every block and driller sprite once and packs them into a single image.
+ * Views show a sprite by pointing their viewport at its region of the atlas instead of loading the file again.
+ */
+public class SpriteAtlas {
+    private static final int ATLAS_WIDTH = 512; // Width of the packed atlas, sprites wrap onto a new shelf when a row is full
+
+    // Sprites of the driller, they are packed together with the block sprites
+    public static final String DRILL_FLYING_ON = "assets/drill/drill_51.png";
+    public static final String DRILL_FLYING_OFF = "assets/drill/drill_49.png";
+    public static final String DRILL_DOWN = "assets/drill/drill_41.png";
+    public static final String DRILL_LEFT = "assets/drill/drill_01.png";
+    public static final String DRILL_RIGHT = "assets/drill/drill_58.png";
+
+    private static SpriteAtlas shared;
+
+    private final Image atlas;
+    private final Map<String, Rectangle2D> regions = new HashMap<>();
+    private final Map<String, Image> looseImages = new HashMap<>(); // Sprites requested after the atlas was packed
+
+    /**
+     * Returns the atlas shared by the whole game, packing it on first use.
+     * It must be called on the JavaFX application thread.
+     * @return The shared SpriteAtlas.
+     */
+    public static SpriteAtlas getShared() {
+        if (shared == null) {
+            shared = new SpriteAtlas(defaultSprites());
+        }
+        return shared;
+    }
+
+    /**
+     * Lists the image files of every block type and the driller.
+     * @return The sprite files to pack.
+     */
+    private static List<String> defaultSprites() {
+        List<String> sprites = new ArrayList<>();
+        for (byte type = 0; type < BlockGrid.TYPE_COUNT; type++) {
+            String imageFile = BlockGrid.blockOf(type).getImageFile();
+            if (imageFile != null) { // Sky blocks have no image file
+                sprites.add(imageFile);
+            }
+        }
+        sprites.add(DRILL_FLYING_ON);
+        sprites.add(DRILL_FLYING_OFF);
+        sprites.add(DRILL_DOWN);
+        sprites.add(DRILL_LEFT);
+        sprites.add(DRILL_RIGHT);
+        return sprites;
+    }
+
+    /**
+     * Constructor for SpriteAtlas.
+     * Decodes each sprite once and copies it into one atlas image using shelf packing.
+     * @param sprites The image files to pack.
+     */
+    public SpriteAtlas(List<String> sprites) {
+        List<String> packedSprites = new ArrayList<>();
+        List<Image> images = new ArrayList<>();
+        int shelfX = 0, shelfY = 0, shelfHeight = 0, atlasWidth = ATLAS_WIDTH;
+        // First pass: decode the images and place them on shelves
+        for (String sprite : sprites) {
+            if (regions.containsKey(sprite)) continue; // Same file listed twice
+            Image image = new Image(sprite);
+            int width = (int) image.getWidth();
+            int height = (int) image.getHeight();
+            atlasWidth = Math.max(atlasWidth, width);
+            if (shelfX + width > atlasWidth) { // Row is full, start a new shelf below
+                shelfX = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            regions.put(sprite, new Rectangle2D(shelfX, shelfY, width, height));
+            packedSprites.add(sprite);
+            images.add(image);
+            shelfX += width;
+            shelfHeight = Math.max(shelfHeight, height);
+        }
+        // Second pass: copy the pixels of every image into its region
+        WritableImage packed = new WritableImage(atlasWidth, Math.max(1, shelfY + shelfHeight));
+        PixelWriter writer = packed.getPixelWriter();
+        for (int i = 0; i < images.size(); i++) {
+            Rectangle2D region = regions.get(packedSprites.get(i));
+            if (region.getWidth() > 0 && region.getHeight() > 0) { // Images that failed to load are empty
+                writer.setPixels((int) region.getMinX(), (int) region.getMinY(), (int) region.getWidth(), (int) region.getHeight(), images.get(i).getPixelReader(), 0, 0);
+            }
+        }
+        this.atlas = packed;
+    }
+
+    /**
+     * Getter for the packed atlas image.
+     * @return The image containing every packed sprite.
+     */
+    public Image getAtlasImage() {
+        return atlas;
+    }
+
+    /**
+     * Returns the region of the atlas holding the given sprite.
+     * @param sprite The image file of the sprite.
+     * @return The region of the sprite, or null if it was not packed.
+     */
+    public Rectangle2D getRegion(String sprite) {
+        return regions.get(sprite);
+    }
+
+    /**
+     * Creates an ImageView showing the given sprite.
+     * @param sprite The image file of the sprite.
+     * @return A new ImageView that shares the atlas image.
+     */
+    public ImageView createView(String sprite) {
+        ImageView view = new ImageView();
+        apply(view, sprite);
+        return view;
+    }
+
+    /**
+     * Changes the sprite shown by an ImageView without decoding anything.
+     * Sprites that are not in the atlas are decoded once and cached on their own.
+     * @param view The ImageView to change.
+     * @param sprite The image file of the sprite.
+     */
+    public void apply(ImageView view, String sprite) {
+        Rectangle2D region = regions.get(sprite);
+        if (region != null) {
+            view.setImage(atlas);
+            view.setViewport(region);
+        } else {
+            view.setImage(looseImages.computeIfAbsent(sprite, Image::new));
+            view.setViewport(null);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StripedHistogram counts values in fixed-width buckets that many threads can record into at once.
+ * Each bucket is a LongAdder, so threads recording the same bucket do not contend on one counter.
+ * Values past the last bucket are counted in an overflow bucket.
+ */
+public class StripedHistogram {
+    private final double bucketWidth;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Constructor for StripedHistogram.
+     * @param bucketWidth The width of every bucket, the first bucket starts at 0.
+     * @param bucketCount The number of buckets, not counting the overflow bucket.
+     */
+    public StripedHistogram(double bucketWidth, int bucketCount) {
+        this.bucketWidth = bucketWidth;
+        this.buckets = new LongAdder[bucketCount + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a value, negative values go to the first bucket.
+     * @param value The value to count.
+     */
+    public void record(double value) {
+        int bucket = (int) Math.min(buckets.length - 1, Math.max(0, value / bucketWidth));
+        buckets[bucket].increment();
+        count.increment();
+    }
+
+    /**
+     * Returns the number of buckets including the overflow bucket.
+     */
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * Returns the lowest value counted in a bucket.
+     * @param bucket The index of the bucket.
+     */
+    public double getBucketStart(int bucket) {
+        return bucket * bucketWidth;
+    }
+
+    /**
+     * Returns the number of values counted in a bucket.
+     * @param bucket The index of the bucket.
+     */
+    public long getBucket(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * Returns the number of values counted.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the upper edge of the bucket that holds the given percentile.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value at or below which that share of the values was counted.
+     */
+    public double getPercentile(double percentile) {
+        long total = getCount();
+        long target = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= target && seen > 0) {
+                return (i + 1) * bucketWidth;
+            }
+        }
+        return buckets.length * bucketWidth;
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * TickHandler is implemented by the timed systems of the game, such as gravity and fuel drain.
+ * Handlers are registered on the GameLoop with the period they want to run at.
+ */
+@FunctionalInterface
+public interface TickHandler {
+    /**
+     * Runs one step of the system.
+     * @param tick The number of the simulation tick that is running.
+     */
+    void tick(long tick);
+}
@@ -0,0 +1,62 @@
+import javafx.scene.Node;
+import java.util.Arrays;
+
+/**
+ * TileIndex maps each grid cell to the scene node that draws it.
+ * Nodes are stored row-major in an array, so finding the node of a cell is a direct lookup.
+ */
+public class TileIndex {
+    private final int width;
+    private final Node[] nodes;
+
+    /**
+     * Constructor for TileIndex.
+     * @param width The width of the grid in blocks.
+     * @param height The height of the grid in blocks.
+     */
+    public TileIndex(int width, int height) {
+        this.width = width;
+        this.nodes = new Node[width * height];
+    }
+
+    /**
+     * Returns the node drawing the cell at the given coordinates.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @return The node of the cell, or null if the cell has no node.
+     */
+    public Node get(int x, int y) {
+        return nodes[y * width + x];
+    }
+
+    /**
+     * Registers the node drawing the cell at the given coordinates.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @param node The node of the cell.
+     * @return The node that was registered for the cell before, or null.
+     */
+    public Node put(int x, int y, Node node) {
+        int index = y * width + x;
+        Node previous = nodes[index];
+        nodes[index] = node;
+        return previous;
+    }
+
+    /**
+     * Unregisters the node of the cell at the given coordinates.
+     * @param x The x coordinate of the cell.
+     * @param y The y coordinate of the cell.
+     * @return The node that was registered for the cell, or null.
+     */
+    public Node remove(int x, int y) {
+        return put(x, y, null);
+    }
+
+    /**
+     * Unregisters every node, used when the grid is drawn again from scratch.
+     */
+    public void clear() {
+        Arrays.fill(nodes, null);
+    }
+}
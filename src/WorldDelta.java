@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+
+/**
+ * WorldDelta collects what changed in a shared world during one server tick and encodes it as one message.
+ * It listens to the world for changed cells and is told by the server which drillers moved, so a tick costs the bytes of
+ * its changes and not of the grid. Every client gets the same message, it is encoded once and only read after that.
+ *
+ * Every message starts with its length and kind. WELCOME carries the client's driller number, the grid size, every cell
+ * and the drillers in the world, DELTA carries the tick, the changed cells and the changed drillers.
+ * A client sends one byte per move, the ordinal of the Direction.
+ */
+public class WorldDelta implements SimulationListener {
+    public static final byte WELCOME = 1; // driller, width, height, tick, cells, driller count, drillers
+    public static final byte DELTA = 2; // tick, cell count, cells, driller count, drillers
+    public static final int CELL_SIZE = 9; // x, y, new type
+    public static final int DRILLER_SIZE = 18; // number, x, y, pose, state, money
+
+    // States of a driller in a DELTA
+    public static final byte PLAYING = 0;
+    public static final byte LEFT = 1; // The client disconnected, the driller is gone
+    public static final byte OVER = 2; // Plus the ordinal of the cause
+
+    private ByteBuffer cells = ByteBuffer.allocate(4096);
+    private ByteBuffer drillers = ByteBuffer.allocate(4096);
+    private int cellCount;
+    private int drillerCount;
+
+    /**
+     * Adds a record for a changed cell.
+     */
+    @Override
+    public void cellChanged(int x, int y, byte oldType, byte newType) {
+        cells = reserve(cells, CELL_SIZE);
+        cells.putInt(x).putInt(y).put(newType);
+        cellCount++;
+    }
+
+    /**
+     * Adds a record for a driller whose cell, pose, money or state changed.
+     * @param number The number of the driller.
+     * @param simulation The driller's simulation.
+     * @param state PLAYING, LEFT, or OVER plus the ordinal of the cause.
+     */
+    public void drillerChanged(int number, MineSimulation simulation, byte state) {
+        drillers = reserve(drillers, DRILLER_SIZE);
+        drillers.putInt(number).putInt(simulation.getX()).putInt(simulation.getY()).put((byte) simulation.getPose().ordinal())
+                .put(state).putInt(simulation.getMoney());
+        drillerCount++;
+    }
+
+    /**
+     * Returns the state of a driller to send.
+     * @param simulation The driller's simulation.
+     */
+    public static byte stateOf(MineSimulation simulation) {
+        return simulation.isGameOver() ? (byte) (OVER + simulation.getCause().ordinal()) : PLAYING;
+    }
+
+    /**
+     * Returns true if nothing changed since the last message.
+     */
+    public boolean isEmpty() {
+        return cellCount == 0 && drillerCount == 0;
+    }
+
+    /**
+     * Encodes the changes collected since the last message and starts collecting again.
+     * @param tick The tick the changes happened in.
+     * @return The message, ready to be written.
+     */
+    public ByteBuffer finish(long tick) {
+        cells.flip();
+        drillers.flip();
+        int length = 1 + 8 + 4 + cells.remaining() + 4 + drillers.remaining();
+        ByteBuffer message = ByteBuffer.allocate(4 + length);
+        message.putInt(length).put(DELTA).putLong(tick).putInt(cellCount).put(cells).putInt(drillerCount).put(drillers);
+        message.flip();
+        cells.clear();
+        drillers.clear();
+        cellCount = 0;
+        drillerCount = 0;
+        return message;
+    }
+
+    /**
+     * Encodes the message a client gets when it joins, the deltas after it apply to its cells.
+     * It carries the drillers added with drillerChanged since the last message, the server adds every driller already in the world.
+     * @param number The number of the client's driller.
+     * @param grid The grid of the world.
+     * @param tick The tick the client joins in.
+     * @return The message, ready to be written.
+     */
+    public ByteBuffer welcome(int number, MineGrid grid, long tick) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        drillers.flip();
+        int length = 1 + 4 + 4 + 4 + 8 + width * height + 4 + drillers.remaining();
+        ByteBuffer message = ByteBuffer.allocate(4 + length);
+        message.putInt(length).put(WELCOME).putInt(number).putInt(width).putInt(height).putLong(tick);
+        if (grid instanceof BlockGrid) {
+            message.put(((BlockGrid) grid).getCells());
+        } else {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    message.put(grid.getType(x, y));
+                }
+            }
+        }
+        message.putInt(drillerCount).put(drillers);
+        message.flip();
+        drillers.clear();
+        drillerCount = 0;
+        return message;
+    }
+
+    private static ByteBuffer reserve(ByteBuffer buffer, int size) {
+        if (buffer.remaining() >= size) return buffer;
+        buffer.flip();
+        return ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.limit() + size)).put(buffer);
+    }
+}
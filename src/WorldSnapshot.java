@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * WorldSnapshot saves a running mine to a versioned binary file and resumes it, both through a memory-mapped FileChannel.
+ * The file holds the grid, the driller's position, fuel and flying mode, and the money and haul collected so far.
+ *
+ * A grid that fits on the screen is stored cell by cell. A chunked world is stored as a directory with one entry per chunk
+ * followed by 1 KB pages for the chunks that differ from what the generator produces, the rest are generated from the seed.
+ * Opening a snapshot only maps the file and reads the header. The chunks of a resumed world are read from the mapping
+ * the first time they are needed, so a large world resumes without reading its pages up front.
+ * The header and the chunk directory are checked against the size of the file when it is opened, so a truncated or
+ * corrupt snapshot is rejected with an IllegalArgumentException before any of it is used.
+ */
+public class WorldSnapshot {
+    public static final int MAGIC = 0x48555753; // "HUWS" at the start of every snapshot
+    public static final short VERSION = 1;
+    private static final byte KIND_GRID = 0; // Every cell of a BlockGrid follows the header
+    private static final byte KIND_CHUNKED = 1; // A chunk directory and the changed chunk pages follow the header
+    private static final int HEADER_SIZE = 64;
+    private static final int PAGE_SIZE = ChunkedWorld.CHUNK_SIZE * ChunkedWorld.CHUNK_SIZE;
+    private static final long SEGMENT_SIZE = 1L << 30; // A single mapping is limited to 2 GB, larger files are mapped in segments
+
+    private final MappedByteBuffer[] segments;
+    private final byte kind;
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final int x;
+    private final int y;
+    private final double fuel;
+    private final boolean flying;
+    private final int money;
+    private final int haul;
+    private final int chunksX; // Chunks in one row of the chunk directory
+
+    /**
+     * Constructor for WorldSnapshot, reads the header of a mapped snapshot and checks it against the size of the file.
+     * @param segments The mapped segments of the file.
+     * @param size The size of the file in bytes.
+     * @throws IllegalArgumentException If the file is not a snapshot, or is too short for the grid its header describes.
+     */
+    private WorldSnapshot(MappedByteBuffer[] segments, long size) {
+        this.segments = segments;
+        MappedByteBuffer header = segments[0];
+        if (header.capacity() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a world snapshot");
+        }
+        short version = header.getShort(4);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+        kind = header.get(6);
+        flying = header.get(7) != 0;
+        width = header.getInt(8);
+        height = header.getInt(12);
+        seed = header.getLong(16);
+        x = header.getInt(24);
+        y = header.getInt(28);
+        fuel = header.getDouble(32);
+        money = header.getInt(40);
+        haul = header.getInt(44);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid snapshot size: " + width + "x" + height);
+        }
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IllegalArgumentException("Driller at (" + x + ", " + y + ") is outside the " + width + "x" + height + " grid");
+        }
+        chunksX = chunkCount(width);
+        if (kind == KIND_GRID) {
+            long cells = (long) width * height;
+            if (cells > Integer.MAX_VALUE || size < HEADER_SIZE + cells) {
+                throw new IllegalArgumentException("Truncated snapshot: " + size + " bytes for a " + width + "x" + height + " grid");
+            }
+        } else if (kind == KIND_CHUNKED) {
+            checkDirectory(size);
+        } else {
+            throw new IllegalArgumentException("Unknown snapshot kind: " + kind);
+        }
+    }
+
+    /**
+     * Checks that the chunk directory fits in the file and that every entry points to a page of the file.
+     * @param size The size of the file in bytes.
+     */
+    private void checkDirectory(long size) {
+        long chunks = (long) chunksX * chunkCount(height);
+        long directorySize = 4L * chunks;
+        if (size < HEADER_SIZE + directorySize) {
+            throw new IllegalArgumentException("Truncated snapshot: " + size + " bytes for a directory of " + chunks + " chunks");
+        }
+        long pages = Math.max(0, size - pagesStart(directorySize)) / PAGE_SIZE;
+        for (long chunk = 0; chunk < chunks; chunk++) {
+            int entry = getInt(segments, HEADER_SIZE + 4 * chunk); // The page number plus one, or zero
+            if (entry < 0 || entry > pages) {
+                throw new IllegalArgumentException("Chunk " + chunk + " points to page " + (entry - 1) + " of a file with " + pages + " pages");
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of a running mine.
+     * The snapshot is written next to the file and moved over it, so a snapshot that is being resumed from stays readable.
+     * @param path The file to write.
+     * @param simulation The simulation to save.
+     */
+    public static void save(Path path, MineSimulation simulation) throws IOException {
+        MineGrid grid = simulation.getGrid();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer[] segments;
+            if (grid instanceof ChunkedWorld) {
+                ChunkedWorld world = (ChunkedWorld) grid;
+                int[] pageCount = new int[1];
+                world.forEachChangedChunk((chunkX, chunkY, cells) -> pageCount[0]++);
+                long directorySize = 4L * chunkCount(world.getWidth()) * chunkCount(world.getHeight());
+                long pagesStart = pagesStart(directorySize);
+                segments = map(channel, FileChannel.MapMode.READ_WRITE, pagesStart + (long) pageCount[0] * PAGE_SIZE);
+                writeHeader(segments[0], KIND_CHUNKED, simulation, world.getSeed());
+                int chunksX = chunkCount(world.getWidth());
+                int[] page = new int[1];
+                world.forEachChangedChunk((chunkX, chunkY, cells) -> {
+                    // Directory entries hold the page number plus one, zero means the chunk is generated from the seed
+                    putInt(segments, HEADER_SIZE + 4L * ((long) chunkY * chunksX + chunkX), page[0] + 1);
+                    put(segments, pagesStart + (long) page[0] * PAGE_SIZE, cells, cells.length);
+                    page[0]++;
+                });
+            } else {
+                segments = map(channel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) grid.getWidth() * grid.getHeight());
+                writeHeader(segments[0], KIND_GRID, simulation, 0);
+                byte[] row = new byte[grid.getWidth()];
+                for (int rowY = 0; rowY < grid.getHeight(); rowY++) {
+                    for (int rowX = 0; rowX < row.length; rowX++) {
+                        row[rowX] = grid.getType(rowX, rowY);
+                    }
+                    put(segments, HEADER_SIZE + (long) rowY * row.length, row, row.length);
+                }
+            }
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the header of a snapshot.
+     * @param header The first segment of the file.
+     * @param kind The kind of grid that follows the header.
+     * @param simulation The simulation that is saved.
+     * @param seed The seed of a chunked world, 0 for a grid.
+     */
+    private static void writeHeader(MappedByteBuffer header, byte kind, MineSimulation simulation, long seed) {
+        header.putInt(0, MAGIC);
+        header.putShort(4, VERSION);
+        header.put(6, kind);
+        header.put(7, (byte) (simulation.isFlying() ? 1 : 0));
+        header.putInt(8, simulation.getGrid().getWidth());
+        header.putInt(12, simulation.getGrid().getHeight());
+        header.putLong(16, seed);
+        header.putInt(24, simulation.getX());
+        header.putInt(28, simulation.getY());
+        header.putDouble(32, simulation.getFuel());
+        header.putInt(40, simulation.getMoney());
+        header.putInt(44, simulation.getHaul());
+    }
+
+    /**
+     * Maps a snapshot file and reads its header, the grid is read when the snapshot is restored.
+     * @param path The file to open.
+     * @return The opened snapshot.
+     * @throws IllegalArgumentException If the file is not a snapshot or is truncated.
+     */
+    public static WorldSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return new WorldSnapshot(map(channel, FileChannel.MapMode.READ_ONLY, size), size); // Mappings stay valid after the channel is closed
+        }
+    }
+
+    /**
+     * Creates a simulation in the saved state.
+     * A grid is copied out of the file, a chunked world reads its changed chunks from the mapping as they are loaded.
+     * @return The restored simulation.
+     */
+    public MineSimulation restore() {
+        MineGrid grid;
+        if (kind == KIND_CHUNKED) {
+            grid = new ChunkedWorld(width, height, seed, ChunkedWorld.DEFAULT_CACHE_SIZE, this);
+        } else if (kind == KIND_GRID) {
+            BlockGrid blockGrid = new BlockGrid(width, height);
+            get(segments, HEADER_SIZE, blockGrid.getCells(), blockGrid.getCells().length);
+            grid = blockGrid;
+        } else {
+            throw new IllegalArgumentException("Unknown snapshot kind: " + kind);
+        }
+        MineSimulation simulation = new MineSimulation(grid, x, y);
+        simulation.restore(x, y, fuel, flying, money, haul);
+        return simulation;
+    }
+
+    /**
+     * Copies a saved chunk of a chunked world.
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkY The y coordinate of the chunk.
+     * @param cells The row-major cells to copy the chunk into.
+     * @return True if the chunk was saved, false if it is generated from the seed.
+     */
+    public boolean readChunk(int chunkX, int chunkY, byte[] cells) {
+        int page = getInt(segments, HEADER_SIZE + 4L * ((long) chunkY * chunksX + chunkX)) - 1;
+        if (page < 0) return false;
+        long directorySize = 4L * chunksX * chunkCount(height);
+        get(segments, pagesStart(directorySize) + (long) page * PAGE_SIZE, cells, PAGE_SIZE);
+        return true;
+    }
+
+    /**
+     * Returns the number of chunks needed to cover a length in blocks.
+     */
+    private static int chunkCount(int blocks) {
+        return (blocks + ChunkedWorld.CHUNK_SIZE - 1) >> ChunkedWorld.CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the offset of the first chunk page, pages are aligned so none of them crosses a segment.
+     */
+    private static long pagesStart(long directorySize) {
+        return (HEADER_SIZE + directorySize + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    /**
+     * Maps a file in segments of at most SEGMENT_SIZE bytes.
+     * @param channel The channel of the file.
+     * @param mode The mapping mode, a writable mapping grows the file to the size.
+     * @param size The size of the file in bytes.
+     * @return The mapped segments.
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) Math.max(1, (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(mode, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+        return segments;
+    }
+
+    private static int getInt(MappedByteBuffer[] segments, long offset) {
+        return segments[(int) (offset / SEGMENT_SIZE)].getInt((int) (offset % SEGMENT_SIZE)); // Ints are aligned, they never cross a segment
+    }
+
+    private static void putInt(MappedByteBuffer[] segments, long offset, int value) {
+        segments[(int) (offset / SEGMENT_SIZE)].putInt((int) (offset % SEGMENT_SIZE), value);
+    }
+
+    /**
+     * Copies bytes out of the mapping, splitting the copy where it crosses a segment.
+     */
+    private static void get(MappedByteBuffer[] segments, long offset, byte[] bytes, int length) {
+        int done = 0;
+        while (done < length) {
+            long position = offset + done;
+            int count = (int) Math.min(length - done, SEGMENT_SIZE - position % SEGMENT_SIZE);
+            segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE), bytes, done, count);
+            done += count;
+        }
+    }
+
+    /**
+     * Copies bytes into the mapping, splitting the copy where it crosses a segment.
+     */
+    private static void put(MappedByteBuffer[] segments, long offset, byte[] bytes, int length) {
+        int done = 0;
+        while (done < length) {
+            long position = offset + done;
+            int count = (int) Math.min(length - done, SEGMENT_SIZE - position % SEGMENT_SIZE);
+            segments[(int) (position / SEGMENT_SIZE)].put((int) (position % SEGMENT_SIZE), bytes, done, count);
+            done += count;
+        }
+    }
+}